@@ -55,7 +55,7 @@ public class IntentReceiver extends AppCompatActivity {
             return;
         }
 
-        album.getAlbumItems().add(albumItem);
+        album.addAlbumItem(albumItem);
 
         if (albumItem instanceof Video) {
             Intent view_video = new Intent(this, VideoPlayerActivity.class)
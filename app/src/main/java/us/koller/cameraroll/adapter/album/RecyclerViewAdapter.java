@@ -44,6 +44,16 @@ public class RecyclerViewAdapter extends RecyclerView.Adapter {
 
     private DragSelectTouchListener dragSelectTouchListener;
 
+    //items of a windowed album are loaded in the background, shown once they are set
+    private final Album.ItemsCallback itemsCallback = new Album.ItemsCallback() {
+        @Override
+        public void onItemsLoaded(Album album) {
+            if (album == getAlbum()) {
+                notifyDataSetChanged();
+            }
+        }
+    };
+
     public RecyclerViewAdapter(SelectorModeManager.Callback callback, final RecyclerView recyclerView,
                                final Album album, boolean pick_photos) {
         this.album = album;
@@ -257,6 +267,9 @@ public class RecyclerViewAdapter extends RecyclerView.Adapter {
 
     @Override
     public int getItemCount() {
+        if (!getAlbum().loadItemsAsync(itemsCallback)) {
+            return 0;
+        }
         return getAlbum().getAlbumItems().size();
     }
 
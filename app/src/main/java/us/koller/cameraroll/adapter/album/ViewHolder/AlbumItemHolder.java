@@ -9,7 +9,9 @@ import android.view.View;
 import android.widget.ImageView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
 import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.engine.GlideException;
 import com.bumptech.glide.request.RequestListener;
 import com.bumptech.glide.request.RequestOptions;
@@ -17,6 +19,7 @@ import com.bumptech.glide.request.target.Target;
 
 import us.koller.cameraroll.R;
 import us.koller.cameraroll.data.AlbumItem;
+import us.koller.cameraroll.util.ThumbnailCache;
 import us.koller.cameraroll.util.Util;
 import us.koller.cameraroll.util.animators.ColorFade;
 
@@ -76,9 +79,18 @@ public abstract class AlbumItemHolder extends RecyclerView.ViewHolder {
                 .error(R.drawable.error_placeholder_tinted)
                 .signature(albumItem.getGlideSignature());
 
-        Glide.with(imageView.getContext())
-                .asBitmap()
-                .load(albumItem.getPath())
+        //grid-sized thumbnail from the ThumbnailCache (created there, if there is none yet)
+        ThumbnailCache.Thumbnail thumbnail = ThumbnailCache.getThumbnail(albumItem);
+        RequestBuilder<Bitmap> requestBuilder = Glide.with(imageView.getContext()).asBitmap();
+        if (thumbnail != null) {
+            requestBuilder = requestBuilder.load(thumbnail);
+            //the ThumbnailCache is the disk cache
+            options = options.diskCacheStrategy(DiskCacheStrategy.NONE);
+        } else {
+            requestBuilder = requestBuilder.load(albumItem.getPath());
+        }
+
+        requestBuilder
                 .listener(new RequestListener<Bitmap>() {
                     @Override
                     public boolean onLoadFailed(@Nullable GlideException e, Object model,
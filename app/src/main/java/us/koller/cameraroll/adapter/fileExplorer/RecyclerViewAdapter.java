@@ -93,7 +93,7 @@ public class RecyclerViewAdapter extends RecyclerView.Adapter {
                     final Album album = new Album().setPath(path);
                     AlbumItem albumItem = AlbumItem.getInstance(file.getPath());
                     if (albumItem != null) {
-                        album.getAlbumItems().add(albumItem);
+                        album.addAlbumItem(albumItem);
                     }
 
                     if (albumItem != null) {
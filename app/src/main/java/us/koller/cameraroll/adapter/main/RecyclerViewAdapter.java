@@ -6,12 +6,15 @@ import android.content.Intent;
 import android.content.res.Resources;
 import android.os.Bundle;
 import android.support.v4.app.ActivityOptionsCompat;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 
 import us.koller.cameraroll.R;
 import us.koller.cameraroll.themes.Theme;
@@ -22,6 +25,7 @@ import us.koller.cameraroll.adapter.main.ViewHolder.ExcludedAlbumHolder;
 import us.koller.cameraroll.adapter.main.ViewHolder.NestedRecyclerViewAlbumHolder;
 import us.koller.cameraroll.adapter.main.ViewHolder.ParallaxAlbumHolder;
 import us.koller.cameraroll.data.Album;
+import us.koller.cameraroll.data.AlbumItem;
 import us.koller.cameraroll.data.Provider.Provider;
 import us.koller.cameraroll.data.Settings;
 import us.koller.cameraroll.ui.AlbumActivity;
@@ -58,6 +62,64 @@ public class RecyclerViewAdapter extends RecyclerView.Adapter {
         return this;
     }
 
+    //insert a streamed album at its sorted position,
+    //or replace the album with the same path
+    public void addAlbum(Album album, Comparator<Album> comparator) {
+        for (int i = 0; i < albums.size(); i++) {
+            if (albums.get(i).getPath().equals(album.getPath())) {
+                albums.set(i, album);
+                notifyItemChanged(i);
+                return;
+            }
+        }
+
+        int index = Collections.binarySearch(albums, album, comparator);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        albums.add(index, album);
+        notifyItemInserted(index);
+    }
+
+    //swap in the final albums, only notifying about the albums that actually changed
+    public void updateAlbums(final ArrayList<Album> albums) {
+        final ArrayList<Album> oldAlbums = this.albums;
+        DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldAlbums.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return albums.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return oldAlbums.get(oldItemPosition).getPath()
+                        .equals(albums.get(newItemPosition).getPath());
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                Album oldAlbum = oldAlbums.get(oldItemPosition);
+                Album newAlbum = albums.get(newItemPosition);
+                if (oldAlbum == newAlbum) {
+                    return true;
+                }
+                //same size and cover
+                AlbumItem oldCover = oldAlbum.getCoverItem();
+                AlbumItem newCover = newAlbum.getCoverItem();
+                return oldAlbum.getItemCount() == newAlbum.getItemCount()
+                        && (newCover == null || (oldCover != null
+                        && oldCover.getPath().equals(newCover.getPath())));
+            }
+        });
+        setAlbums(albums);
+        result.dispatchUpdatesTo(this);
+    }
+
     @Override
     public int getItemViewType(int position) {
         boolean albumExcluded
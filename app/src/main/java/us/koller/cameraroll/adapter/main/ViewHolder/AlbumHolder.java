@@ -85,15 +85,14 @@ public abstract class AlbumHolder extends RecyclerView.ViewHolder {
     }
 
     void loadImage(final ImageView image) {
-        if (album.getAlbumItems().size() == 0) {
+        final AlbumItem coverImage = album.getCoverItem();
+        if (coverImage == null) {
             Glide.with(getContext())
                     .load(R.drawable.error_placeholder_tinted)
                     .into(image);
             return;
         }
 
-        final AlbumItem coverImage = album.getAlbumItems().get(0);
-
         RequestOptions options = new RequestOptions()
                 .error(R.drawable.error_placeholder_tinted)
                 .signature(coverImage.getGlideSignature());
@@ -25,8 +25,8 @@ public class CardAlbumHolder extends AlbumHolder {
 
         if (!excluded) {
             //album not excluded
-            String count = album.getAlbumItems().size()
-                    + (album.getAlbumItems().size() > 1 ?
+            String count = album.getItemCount()
+                    + (album.getItemCount() > 1 ?
                     getContext().getString(R.string.items) :
                     getContext().getString(R.string.item));
             ((TextView) itemView.findViewById(R.id.count)).setText(Html.fromHtml(count));
@@ -35,8 +35,10 @@ public class CardAlbumHolder extends AlbumHolder {
 
             //set image saturation to 0
             //prevent image from fading saturation
-            final AlbumItem coverImage = album.getAlbumItems().get(0);
-            coverImage.hasFadedIn = true;
+            final AlbumItem coverImage = album.getCoverItem();
+            if (coverImage != null) {
+                coverImage.hasFadedIn = true;
+            }
 
             ColorMatrix matrix = new ColorMatrix();
             matrix.setSaturation(0);
@@ -223,8 +223,8 @@ public class NestedRecyclerViewAlbumHolder extends AlbumHolder
         this.album = album;
 
         //album not excluded
-        String count = album.getAlbumItems().size()
-                + (album.getAlbumItems().size() > 1 ?
+        String count = album.getItemCount()
+                + (album.getItemCount() > 1 ?
                 getContext().getString(R.string.items) :
                 getContext().getString(R.string.item));
         //noinspection deprecation
@@ -233,7 +233,7 @@ public class NestedRecyclerViewAlbumHolder extends AlbumHolder
         int oldHeight = nestedRecyclerView.getHeight();
 
         //make RecyclerView either single ore double lined, depending on the album size
-        int lineCount = album.getAlbumItems().size() > SINGLE_LINE_MAX_ITEM_COUNT ? 2 : 1;
+        int lineCount = album.getItemCount() > SINGLE_LINE_MAX_ITEM_COUNT ? 2 : 1;
         int height = (int) getContext().getResources()
                 .getDimension(R.dimen.nested_recyclerView_line_height) * lineCount;
 
@@ -245,7 +245,7 @@ public class NestedRecyclerViewAlbumHolder extends AlbumHolder
             itemDecoration.setSpanCount(lineCount);
 
             RecyclerView.LayoutManager layoutManager;
-            if (album.getAlbumItems().size() > SINGLE_LINE_MAX_ITEM_COUNT) {
+            if (album.getItemCount() > SINGLE_LINE_MAX_ITEM_COUNT) {
                 layoutManager = new GridLayoutManager(getContext(), lineCount,
                         GridLayoutManager.HORIZONTAL, false);
             } else {
@@ -316,11 +316,8 @@ public class NestedRecyclerViewAlbumHolder extends AlbumHolder
         switch (item.getItemId()) {
             case R.id.share:
                 //share multiple items
-                ArrayList<Uri> uris = new ArrayList<>();
-                for (int i = 0; i < paths.length; i++) {
-                    uris.add(StorageUtil
-                            .getContentUriFromFilePath(getContext(), paths[i]));
-                }
+                ArrayList<Uri> uris = StorageUtil
+                        .getContentUrisFromFilePaths(getContext(), paths);
 
                 intent = new Intent();
                 intent.setAction(Intent.ACTION_SEND_MULTIPLE)
@@ -19,8 +19,8 @@ public class ParallaxAlbumHolder extends AlbumHolder {
     public void setAlbum(Album album) {
         super.setAlbum(album);
         //album not excluded
-        String count = album.getAlbumItems().size()
-                + (album.getAlbumItems().size() > 1 ?
+        String count = album.getItemCount()
+                + (album.getItemCount() > 1 ?
                 getContext().getString(R.string.items) :
                 getContext().getString(R.string.item));
         ((TextView) itemView.findViewById(R.id.count)).setText(Html.fromHtml(count));
@@ -1,5 +1,8 @@
 package us.koller.cameraroll.data;
 
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Parcel;
 import android.os.Parcelable;
 
@@ -8,6 +11,8 @@ import java.util.ArrayList;
 
 import us.koller.cameraroll.data.Provider.MediaProvider;
 import us.koller.cameraroll.data.Provider.Provider;
+import us.koller.cameraroll.data.Provider.Retriever.MediaStoreRetriever;
+import us.koller.cameraroll.util.NameKey;
 import us.koller.cameraroll.util.SortUtil;
 
 public class Album
@@ -16,8 +21,48 @@ public class Album
     private static final int NOT_HIDDEN = 1;
     private static final int HIDDEN = 2;
 
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    //windowed loading: only the aggregates of the album are known,
+    //its items are loaded from the source the first time they are needed
+    public interface ItemSource {
+        //called on the thread of getAlbumItems(), or a background thread for loadItemsAsync()
+        ArrayList<AlbumItem> loadItems(Album album);
+
+        //called on the ui thread, once items loaded by loadItemsAsync() were set
+        void onItemsLoaded(Album album);
+
+        //MediaStore bucket of the items, parceled, so the receiver can load them again
+        long getBucketId();
+    }
+
+    public interface ItemsCallback {
+        //called on the ui thread
+        void onItemsLoaded(Album album);
+    }
+
     private ArrayList<AlbumItem> albumItems;
+
+    private ItemSource itemSource;
+    //callbacks of loadItemsAsync(), null while no items are loaded in the background
+    private ArrayList<ItemsCallback> itemsCallbacks;
+    private int itemCount;
+    private long date;
+    private long totalBytes;
+    //newest lastModified of the items
+    private long lastModified;
+    private AlbumItem coverItem;
+
+    //aggregates of the loaded items, kept up to date by add- & removeAlbumItem()
+    private boolean dateValid = false;
+    private boolean totalBytesValid = false;
+
     private String path;
+    private NameKey nameKey;
+
+    //items were sorted, before the album was first handed to the ui;
+    //from then on, they are only re-sorted on the ui thread
+    private boolean itemsSorted = false;
 
     private int hidden = -1;
     public boolean excluded;
@@ -32,6 +77,7 @@ public class Album
 
     public Album setPath(String path) {
         this.path = path;
+        nameKey = null;
 
         excluded = Provider.isDirExcluded(getPath(),
                 Provider.getExcludedPaths());
@@ -42,6 +88,28 @@ public class Album
         return this;
     }
 
+    public Album setItemSource(ItemSource itemSource, int itemCount,
+                               long date, long totalBytes, long lastModified, AlbumItem coverItem) {
+        this.itemSource = itemSource;
+        this.itemCount = itemCount;
+        this.date = date;
+        this.totalBytes = totalBytes;
+        this.lastModified = lastModified;
+        this.coverItem = coverItem;
+        return this;
+    }
+
+    //the dir was already listed while loading,
+    //so isHidden() doesn't need to list it again
+    public Album setContainsNoMedia(boolean containsNoMedia) {
+        hidden = containsNoMedia || getName().startsWith(".") ? HIDDEN : NOT_HIDDEN;
+        return this;
+    }
+
+    public synchronized boolean areItemsLoaded() {
+        return itemSource == null;
+    }
+
     public boolean isHidden() {
         if (hidden != -1) {
             return hidden == HIDDEN;
@@ -76,14 +144,93 @@ public class Album
     }
 
     @Override
-    public long getDate() {
-        long newestItem = -1;
+    public NameKey getNameKey() {
+        NameKey nameKey = this.nameKey;
+        if (nameKey == null || !nameKey.isValid()) {
+            nameKey = NameKey.create(getName());
+            this.nameKey = nameKey;
+        }
+        return nameKey;
+    }
+
+    //date of the newest item
+    @Override
+    public synchronized long getDate() {
+        if (itemSource == null && !dateValid) {
+            date = -1;
+            for (int i = 0; i < albumItems.size(); i++) {
+                if (albumItems.get(i).getDate() > date) {
+                    date = albumItems.get(i).getDate();
+                }
+            }
+            dateValid = true;
+        }
+        return date;
+    }
+
+    //doesn't load the items
+    public synchronized long getTotalBytes() {
+        if (itemSource == null && !totalBytesValid) {
+            totalBytes = 0;
+            for (int i = 0; i < albumItems.size(); i++) {
+                totalBytes += albumItems.get(i).getSize();
+            }
+            totalBytesValid = true;
+        }
+        return totalBytes;
+    }
+
+    //newest lastModified of the items, e.g. to tell if the dir changed; doesn't load the items
+    public synchronized long getLastModified() {
+        if (itemSource != null) {
+            return lastModified;
+        }
+        long lastModified = -1;
         for (int i = 0; i < albumItems.size(); i++) {
-            if (albumItems.get(i).getDate() > newestItem) {
-                newestItem = albumItems.get(i).getDate();
+            if (albumItems.get(i).getLastModified() > lastModified) {
+                lastModified = albumItems.get(i).getLastModified();
             }
         }
-        return newestItem;
+        return lastModified;
+    }
+
+    //dates of the items changed (e.g. dateTaken retrieved in the background)
+    public synchronized void invalidateDate() {
+        dateValid = false;
+    }
+
+    public synchronized void addAlbumItem(AlbumItem albumItem) {
+        addAlbumItem(getAlbumItems().size(), albumItem);
+    }
+
+    public synchronized void addAlbumItem(int index, AlbumItem albumItem) {
+        getAlbumItems().add(index, albumItem);
+        if (dateValid && albumItem.getDate() > date) {
+            date = albumItem.getDate();
+        }
+        if (totalBytesValid) {
+            totalBytes += albumItem.getSize();
+        }
+    }
+
+    public synchronized AlbumItem removeAlbumItem(int index) {
+        AlbumItem albumItem = getAlbumItems().remove(index);
+        if (dateValid && albumItem.getDate() >= date) {
+            //newest item removed
+            dateValid = false;
+        }
+        if (totalBytesValid) {
+            totalBytes -= albumItem.getSize();
+        }
+        return albumItem;
+    }
+
+    public synchronized boolean areItemsSorted() {
+        return itemsSorted;
+    }
+
+    public synchronized void setItemsSorted() {
+        itemsSorted = true;
     }
 
     @Override
@@ -91,16 +238,113 @@ public class Album
         return pinned;
     }
 
-    public ArrayList<AlbumItem> getAlbumItems() {
+    //e.g. to sort them in the background
+    public synchronized ArrayList<AlbumItem> copyAlbumItems() {
+        return new ArrayList<>(getAlbumItems());
+    }
+
+    //applies a new order of the same items (e.g. a sorted copy), on the ui thread;
+    //returns false, if the items changed in the meantime
+    public synchronized boolean reorderAlbumItems(ArrayList<AlbumItem> reorderedItems) {
+        if (itemSource != null || reorderedItems.size() != albumItems.size()) {
+            return false;
+        }
+        albumItems.clear();
+        albumItems.addAll(reorderedItems);
+        return true;
+    }
+
+    //complete list of the items: the items of a windowed album are loaded right away,
+    //on the calling thread; the ui uses loadItemsAsync() instead
+    public synchronized ArrayList<AlbumItem> getAlbumItems() {
+        if (itemSource != null) {
+            setLoadedItems(itemSource.loadItems(this));
+        }
         return albumItems;
     }
 
+    //doesn't block: returns true, if the items are loaded already;
+    //otherwise they are loaded in the background and the callback is called, once they were set
+    public synchronized boolean loadItemsAsync(ItemsCallback callback) {
+        if (itemSource == null) {
+            return true;
+        }
+        boolean loading = itemsCallbacks != null;
+        if (!loading) {
+            itemsCallbacks = new ArrayList<>();
+        }
+        if (callback != null && !itemsCallbacks.contains(callback)) {
+            itemsCallbacks.add(callback);
+        }
+        if (!loading) {
+            loadItems(itemSource);
+        }
+        return false;
+    }
+
+    private void loadItems(final ItemSource itemSource) {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ArrayList<AlbumItem> albumItems = itemSource.loadItems(Album.this);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        ArrayList<ItemsCallback> callbacks;
+                        synchronized (Album.this) {
+                            //getAlbumItems() might have loaded them in the meantime
+                            if (Album.this.itemSource != null) {
+                                setLoadedItems(albumItems);
+                            }
+                            callbacks = itemsCallbacks;
+                            itemsCallbacks = null;
+                        }
+                        for (int i = 0; i < callbacks.size(); i++) {
+                            callbacks.get(i).onItemsLoaded(Album.this);
+                        }
+                        itemSource.onItemsLoaded(Album.this);
+                    }
+                });
+            }
+        });
+    }
+
+    private synchronized void setLoadedItems(ArrayList<AlbumItem> albumItems) {
+        if (albumItems != null) {
+            this.albumItems = albumItems;
+        }
+        itemSource = null;
+        coverItem = null;
+        dateValid = false;
+        totalBytesValid = false;
+    }
+
+    //doesn't load the items
+    public synchronized int getItemCount() {
+        return itemSource != null ? itemCount : albumItems.size();
+    }
+
+    //doesn't load the items
+    public synchronized AlbumItem getCoverItem() {
+        if (itemSource != null) {
+            return coverItem;
+        }
+        return albumItems.size() > 0 ? albumItems.get(0) : null;
+    }
+
     @SuppressWarnings("unchecked")
     private Album(Parcel parcel) {
         path = parcel.readString();
         hidden = parcel.readInt();
-        albumItems = new ArrayList<>();
-        albumItems = parcel.createTypedArrayList(AlbumItem.CREATOR);
+        long bucketId = parcel.readLong();
+        if (bucketId != -1) {
+            //windowed: the receiver loads the items from the bucket again
+            albumItems = new ArrayList<>();
+            setItemSource(MediaStoreRetriever.getItemSource(bucketId), parcel.readInt(),
+                    parcel.readLong(), parcel.readLong(), parcel.readLong(), null);
+        } else {
+            albumItems = parcel.createTypedArrayList(AlbumItem.CREATOR);
+        }
     }
 
     @Override
@@ -114,9 +358,19 @@ public class Album
     }
 
     @Override
-    public void writeToParcel(Parcel parcel, int i) {
+    public synchronized void writeToParcel(Parcel parcel, int i) {
         parcel.writeString(path);
         parcel.writeInt(hidden);
+        if (itemSource != null) {
+            //not loaded yet: only the bucket & aggregates, instead of loading the items to parcel them
+            parcel.writeLong(itemSource.getBucketId());
+            parcel.writeInt(itemCount);
+            parcel.writeLong(date);
+            parcel.writeLong(totalBytes);
+            parcel.writeLong(lastModified);
+            return;
+        }
+        parcel.writeLong(-1);
         AlbumItem[] albumItems = new AlbumItem[this.albumItems.size()];
         for (int k = 0; k < albumItems.length; k++) {
             albumItems[k] = this.albumItems.get(k);
@@ -8,11 +8,14 @@ import android.os.Parcelable;
 import android.provider.OpenableColumns;
 
 import com.bumptech.glide.load.Key;
-import com.bumptech.glide.signature.ObjectKey;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
 
 import us.koller.cameraroll.util.MediaType;
+import us.koller.cameraroll.util.MediaTypeDetector;
+import us.koller.cameraroll.util.NameKey;
 import us.koller.cameraroll.util.SortUtil;
 import us.koller.cameraroll.util.StorageUtil;
 
@@ -24,11 +27,21 @@ public abstract class AlbumItem
     private static final int VIDEO = 3;
     private static final int RAW = 4;
 
+    //null: derived from the path, only set for items without a path (e.g. content uris)
     private String name;
+    private NameKey nameKey;
     private String path;
     private Uri uri;
     private long dateTaken;
-    private int[] imageDimens;
+    //file info, captured while loading; -1: not known yet
+    private long lastModified;
+    private long size;
+    //created from lastModified & size, once
+    private Key glideSignature;
+    //no int[], to save an object per item
+    private int imageWidth;
+    private int imageHeight;
+    private boolean imageDimensRetrieved;
 
     public boolean error = false;
     public boolean isSharedElement = false;
@@ -39,22 +52,29 @@ public abstract class AlbumItem
         if (path == null) {
             return null;
         }
+        return getInstance(path, MediaType.getKind(path));
+    }
 
-        AlbumItem albumItem = null;
-        if (MediaType.isGif(path)) {
-            albumItem = new Gif();
-        } else if (MediaType.isRAWImage(path)) {
-            albumItem = new RAWImage();
-        } else if (MediaType.isImage(path)) {
-            albumItem = new Photo();
-        } else if (MediaType.isVideo(path)) {
-            albumItem = new Video();
-        }
-
-        if (albumItem != null) {
-            albumItem.setPath(path)
-                    .setName(new File(path).getName());
+    //kind of the path is already known, e.g. from the crawl
+    public static AlbumItem getInstance(String path, MediaType.Kind kind) {
+        AlbumItem albumItem;
+        switch (kind) {
+            case GIF:
+                albumItem = new Gif();
+                break;
+            case RAW:
+                albumItem = new RAWImage();
+                break;
+            case IMAGE:
+                albumItem = new Photo();
+                break;
+            case VIDEO:
+                albumItem = new Video();
+                break;
+            default:
+                return null;
         }
+        albumItem.setPath(path);
 
         return albumItem;
     }
@@ -65,14 +85,20 @@ public abstract class AlbumItem
         }
 
         AlbumItem albumItem = null;
-        if (MediaType.isGif(context, uri)) {
-            albumItem = new Gif();
-        } else if (MediaType.isRAWImage(context, uri)) {
-            albumItem = new RAWImage();
-        } else if (MediaType.isImage(context, uri)) {
-            albumItem = new Photo();
-        } else if (MediaType.isVideo(context, uri)) {
-            albumItem = new Video();
+        //single classification, instead of asking the ContentResolver for every type
+        switch (MediaTypeDetector.getKind(context, uri)) {
+            case GIF:
+                albumItem = new Gif();
+                break;
+            case RAW:
+                albumItem = new RAWImage();
+                break;
+            case IMAGE:
+                albumItem = new Photo();
+                break;
+            case VIDEO:
+                albumItem = new Video();
+                break;
         }
 
         if (albumItem != null) {
@@ -95,24 +121,41 @@ public abstract class AlbumItem
     }
 
     AlbumItem() {
-        name = "";
+        name = null;
         path = "";
         dateTaken = -1;
+        lastModified = -1;
+        size = -1;
     }
 
     public AlbumItem setName(String name) {
         this.name = name;
+        nameKey = null;
         return this;
     }
 
     private AlbumItem setPath(String path) {
         this.path = path;
+        nameKey = null;
         return this;
     }
 
     @Override
     public String getName() {
-        return name;
+        if (name != null) {
+            return name;
+        }
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public NameKey getNameKey() {
+        NameKey nameKey = this.nameKey;
+        if (nameKey == null || !nameKey.isValid()) {
+            nameKey = NameKey.create(getName());
+            this.nameKey = nameKey;
+        }
+        return nameKey;
     }
 
     public String getPath() {
@@ -123,13 +166,45 @@ public abstract class AlbumItem
         this.dateTaken = dateTaken;
     }
 
+    //loaders already know lastModified and size of the file,
+    //saves a stat for every item, e.g. when sorting
+    public AlbumItem setFileInfo(long lastModified, long size) {
+        if (this.lastModified != lastModified || this.size != size) {
+            glideSignature = null;
+        }
+        this.lastModified = lastModified;
+        this.size = size;
+        return this;
+    }
+
+    //file was changed, file info (and glide signature) need to be retrieved again
+    public void invalidateFileInfo() {
+        lastModified = -1;
+        size = -1;
+        glideSignature = null;
+    }
+
     @Override
     public long getDate() {
         if (dateTaken != -1) {
             return dateTaken;
         }
 
-        return new File(getPath()).lastModified();
+        return getLastModified();
+    }
+
+    public long getLastModified() {
+        if (lastModified == -1) {
+            lastModified = new File(getPath()).lastModified();
+        }
+        return lastModified;
+    }
+
+    public long getSize() {
+        if (size == -1) {
+            size = new File(getPath()).length();
+        }
+        return size;
     }
 
     public long getDateTaken() {
@@ -163,18 +238,54 @@ public abstract class AlbumItem
     }
 
     public int[] getImageDimens(Context context) {
-        if (imageDimens == null) {
-            imageDimens = retrieveImageDimens(context);
+        if (!imageDimensRetrieved) {
+            int[] imageDimens = retrieveImageDimens(context);
+            imageWidth = imageDimens[0];
+            imageHeight = imageDimens[1];
+            imageDimensRetrieved = true;
         }
-        return new int[]{this.imageDimens[0], this.imageDimens[1]};
+        return new int[]{imageWidth, imageHeight};
     }
 
     abstract int[] retrieveImageDimens(Context context);
 
+    //called on every bind, no stat, when the file info was captured while loading
     public Key getGlideSignature() {
-        File file = new File(getPath());
-        String lastModified = String.valueOf(file.lastModified());
-        return new ObjectKey(lastModified);
+        if (glideSignature == null) {
+            glideSignature = new FileSignature(getLastModified(), getSize());
+        }
+        return glideSignature;
+    }
+
+    private static final class FileSignature implements Key {
+
+        private final long lastModified;
+        private final long size;
+
+        FileSignature(long lastModified, long size) {
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        @Override
+        public void updateDiskCacheKey(MessageDigest messageDigest) {
+            messageDigest.update(ByteBuffer.allocate(16)
+                    .putLong(lastModified).putLong(size).array());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FileSignature)) {
+                return false;
+            }
+            FileSignature signature = (FileSignature) o;
+            return lastModified == signature.lastModified && size == signature.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (lastModified ^ (lastModified >>> 32)) + (int) (size ^ (size >>> 32));
+        }
     }
 
     AlbumItem(Parcel parcel) {
@@ -182,6 +293,9 @@ public abstract class AlbumItem
         this.path = parcel.readString();
         this.error = Boolean.parseBoolean(parcel.readString());
         this.uri = Uri.parse(parcel.readString());
+        this.dateTaken = parcel.readLong();
+        this.lastModified = parcel.readLong();
+        this.size = parcel.readLong();
     }
 
     @Override
@@ -211,6 +325,9 @@ public abstract class AlbumItem
         parcel.writeString(path);
         parcel.writeString(String.valueOf(error));
         parcel.writeString(String.valueOf(uri));
+        parcel.writeLong(dateTaken);
+        parcel.writeLong(lastModified);
+        parcel.writeLong(size);
     }
 
     @SuppressWarnings("WeakerAccess")
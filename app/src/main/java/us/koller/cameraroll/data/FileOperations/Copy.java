@@ -16,6 +16,7 @@ import java.io.OutputStream;
 import us.koller.cameraroll.R;
 import us.koller.cameraroll.data.AlbumItem;
 import us.koller.cameraroll.data.File_POJO;
+import us.koller.cameraroll.util.DateTakenCache;
 import us.koller.cameraroll.util.DateTakenRetriever;
 import us.koller.cameraroll.util.MediaType;
 import us.koller.cameraroll.util.StorageUtil;
@@ -106,6 +107,10 @@ public class Copy extends FileOperation {
                 AlbumItem oldAlbumItem = AlbumItem.getInstance(path);
                 DateTakenRetriever.tryToRetrieveDateTaken(context, oldAlbumItem);
                 long dateAdded = oldAlbumItem.getDateTaken();
+                //the copy has the same dateTaken
+                DateTakenCache.getInstance(context).put(destinationFileName, dateAdded);
+                //an existing copy might have been overwritten
+                FileOperation.Util.invalidateFileInfo(context, new String[]{destinationFileName});
 
                 FileOperation.Util.scanPaths(context,
                         new String[]{path, destinationFileName},
@@ -13,6 +13,7 @@ import java.io.File;
 
 import us.koller.cameraroll.R;
 import us.koller.cameraroll.data.File_POJO;
+import us.koller.cameraroll.util.DateTakenCache;
 import us.koller.cameraroll.util.MediaType;
 import us.koller.cameraroll.util.StorageUtil;
 
@@ -45,6 +46,8 @@ public class Delete extends FileOperation {
             }
 
             if (result) {
+                DateTakenCache.getInstance(this).remove(files[i].getPath());
+                StorageUtil.invalidateContentUri(files[i].getPath());
                 success_count++;
                 onProgress(s, success_count, files.length);
             } else {
@@ -28,7 +28,9 @@ import java.util.Arrays;
 import us.koller.cameraroll.R;
 import us.koller.cameraroll.data.AlbumItem;
 import us.koller.cameraroll.data.File_POJO;
+import us.koller.cameraroll.data.Provider.MediaWatcher;
 import us.koller.cameraroll.data.Settings;
+import us.koller.cameraroll.util.DateTakenCache;
 import us.koller.cameraroll.util.MediaType;
 import us.koller.cameraroll.util.StorageUtil;
 
@@ -68,6 +70,9 @@ public abstract class FileOperation extends IntentService implements Parcelable
     protected void onHandleIntent(Intent workIntent) {
         execute(workIntent);
 
+        //save dates retrieved while executing
+        DateTakenCache.getInstance(this).save(this);
+
         if (autoSendDoneBroadcast()) {
             sendDoneBroadcast();
         }
@@ -319,6 +324,20 @@ public abstract class FileOperation extends IntentService implements Parcelable
             return pathsArray;
         }
 
+        //the files were (re)written: items showing them have stale file info
+        static void invalidateFileInfo(final Context context, final String[] paths) {
+            Handler handler = new Handler(Looper.getMainLooper());
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    MediaWatcher watcher = MediaWatcher.getInstance(context);
+                    for (int i = 0; i < paths.length; i++) {
+                        watcher.invalidate(paths[i]);
+                    }
+                }
+            });
+        }
+
         interface MediaScannerCallback {
             void onAllPathsScanned();
         }
@@ -13,7 +13,9 @@ import java.util.Collections;
 import us.koller.cameraroll.R;
 import us.koller.cameraroll.data.AlbumItem;
 import us.koller.cameraroll.data.File_POJO;
+import us.koller.cameraroll.util.DateTakenCache;
 import us.koller.cameraroll.util.DateTakenRetriever;
+import us.koller.cameraroll.util.StorageUtil;
 
 public class Move extends FileOperation {
 
@@ -108,8 +110,24 @@ public class Move extends FileOperation {
             success = renameFile(file, newFile);
         }
 
+        //cached content-uris of the old paths are stale
+        for (int i = 0; i < oldPaths.length; i++) {
+            StorageUtil.invalidateContentUri(oldPaths[i]);
+        }
+
+        //dates taken of the old paths move with the files
+        if (success) {
+            DateTakenCache dateTakenCache = DateTakenCache.getInstance(context);
+            for (int i = 0; i < oldPaths.length; i++) {
+                dateTakenCache.move(oldPaths[i],
+                        newFile.getPath() + oldPaths[i].substring(path.length()));
+            }
+        }
+
         //re-scan all paths
         String[] newPaths = Util.getAllChildPaths(new ArrayList<String>(), newFile.getPath());
+        //the new paths might have been overwritten
+        Util.invalidateFileInfo(context, newPaths);
 
         ArrayList<String> pathsList = new ArrayList<>();
         Collections.addAll(pathsList, oldPaths);
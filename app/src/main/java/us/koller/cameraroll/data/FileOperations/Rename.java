@@ -21,7 +21,9 @@ import us.koller.cameraroll.data.AlbumItem;
 import us.koller.cameraroll.data.File_POJO;
 import us.koller.cameraroll.data.Settings;
 import us.koller.cameraroll.ui.BaseActivity;
+import us.koller.cameraroll.util.DateTakenCache;
 import us.koller.cameraroll.util.DateTakenRetriever;
+import us.koller.cameraroll.util.StorageUtil;
 
 public class Rename extends FileOperation {
 
@@ -100,8 +102,24 @@ public class Rename extends FileOperation {
         //renaming file
         boolean success = file.renameTo(newFile);
 
+        //cached content-uris of the old paths are stale
+        for (int i = 0; i < oldPaths.length; i++) {
+            StorageUtil.invalidateContentUri(oldPaths[i]);
+        }
+
+        //dates taken of the old paths move with the files
+        if (success) {
+            DateTakenCache dateTakenCache = DateTakenCache.getInstance(context);
+            for (int i = 0; i < oldPaths.length; i++) {
+                dateTakenCache.move(oldPaths[i],
+                        newFile.getPath() + oldPaths[i].substring(path.length()));
+            }
+        }
+
         //re-scan all paths
         String[] newPaths = FileOperation.Util.getAllChildPaths(new ArrayList<String>(), newFile.getPath());
+        //the new paths might have been overwritten
+        FileOperation.Util.invalidateFileInfo(context, newPaths);
 
         ArrayList<String> pathsList = new ArrayList<>();
         Collections.addAll(pathsList, oldPaths);
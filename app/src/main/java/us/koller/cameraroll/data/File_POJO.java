@@ -7,6 +7,7 @@ import java.io.File;
 import java.util.ArrayList;
 
 import us.koller.cameraroll.data.Provider.Provider;
+import us.koller.cameraroll.util.NameKey;
 import us.koller.cameraroll.util.SortUtil;
 
 //simple POJO class
@@ -14,6 +15,7 @@ public class File_POJO
         implements Parcelable, SortUtil.Sortable {
 
     private String path;
+    private NameKey nameKey;
     private ArrayList<File_POJO> children;
     public boolean isMedia;
     public boolean excluded;
@@ -38,6 +40,16 @@ public class File_POJO
         return s[s.length - 1];
     }
 
+    @Override
+    public NameKey getNameKey() {
+        NameKey nameKey = this.nameKey;
+        if (nameKey == null || !nameKey.isValid()) {
+            nameKey = NameKey.create(getName());
+            this.nameKey = nameKey;
+        }
+        return nameKey;
+    }
+
     @Override
     public long getDate() {
         //not needed
@@ -1,7 +1,11 @@
 package us.koller.cameraroll.data.Provider.ItemLoader;
 
 import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.content.LocalBroadcastManager;
 import android.util.Log;
 
 import java.io.File;
@@ -9,17 +13,21 @@ import java.util.ArrayList;
 
 import us.koller.cameraroll.data.Album;
 import us.koller.cameraroll.data.AlbumItem;
+import us.koller.cameraroll.data.Provider.MediaProvider;
 import us.koller.cameraroll.ui.MainActivity;
+import us.koller.cameraroll.util.DateTakenCache;
 import us.koller.cameraroll.util.DateTakenRetriever;
 import us.koller.cameraroll.util.MediaType;
 
 public class AlbumLoader extends ItemLoader {
 
     private DateTakenRetriever dateRetriever;
+    private DateTakenCache dateTakenCache;
 
     private ArrayList<Album> albums;
 
     private Album currentAlbum;
+    private boolean containsNoMedia;
 
     AlbumLoader() {
         albums = new ArrayList<>();
@@ -29,41 +37,84 @@ public class AlbumLoader extends ItemLoader {
         this.dateRetriever = dateRetriever;
     }
 
+    //callback of the dateRetriever shared by the AlbumLoaders of a crawl;
+    //set once, before the crawl starts, the loaders are used by several threads
+    public static DateTakenRetriever.Callback createDateCallback(Context context) {
+        final Context applicationContext = context.getApplicationContext();
+        final Handler handler = new Handler(Looper.getMainLooper());
+        return new DateTakenRetriever.Callback() {
+            @Override
+            public void onProgress(int retrieved, int remaining,
+                                   final DateTakenRetriever.Batch dates) {
+                Log.d("AlbumLoader", "onProgress: " + String.valueOf(retrieved));
+                if (dates.size() == 0) {
+                    return;
+                }
+                //dates are set and the items resorted on the ui thread, in the same run,
+                //so the items are never reordered while they are being sorted
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        String[] changedPaths = dates.apply();
+                        if (changedPaths.length == 0) {
+                            return;
+                        }
+                        //resort once per batch, only moving the items whose date changed
+                        Intent intent = new Intent(MainActivity.RESORT)
+                                .putExtra(MainActivity.CHANGED_PATHS, changedPaths);
+                        LocalBroadcastManager.getInstance(applicationContext)
+                                .sendBroadcastSync(intent);
+                    }
+                });
+            }
+
+            @Override
+            public void done() {
+                Log.d("AlbumLoader", "done: ");
+            }
+        };
+    }
+
     @Override
     public void onNewDir(final Activity context, File dir) {
         currentAlbum = new Album().setPath(dir.getPath());
+        containsNoMedia = false;
 
-        //loading dateTaken timeStamps asynchronously
-        if (dateRetriever != null && dateRetriever.getCallback() == null) {
-            dateRetriever.setCallback(new DateTakenRetriever.Callback() {
-                @Override
-                public void done() {
-                    Log.d("AlbumLoader", "done: ");
-                    Intent intent = new Intent(context, MainActivity.class);
-                    intent.setAction(MainActivity.RESORT);
-                    context.startActivity(intent);
-                }
-            });
+        if (dateTakenCache == null) {
+            dateTakenCache = DateTakenCache.getInstance(context);
         }
     }
 
     @Override
     public void onFile(final Activity context, File file) {
-        if (MediaType.isMedia(file.getPath())) {
-            final AlbumItem albumItem
-                    = AlbumItem.getInstance(file.getPath());
-            if (albumItem != null) {
-                if (dateRetriever != null) {
-                    dateRetriever.retrieveDate(context, albumItem);
-                }
-                currentAlbum.getAlbumItems().add(albumItem);
+        MediaType.Kind kind = MediaType.getKind(file.getPath());
+        //a dir might be named like a media file (e.g. "x.mp4")
+        if (kind != MediaType.Kind.NONE && !file.isDirectory()) {
+            onMediaFile(context, file, kind, file.lastModified(), file.length());
+        } else if (file.getName().equals(MediaProvider.FILE_TYPE_NO_MEDIA)) {
+            containsNoMedia = true;
+        }
+    }
+
+    @Override
+    public void onMediaFile(Activity context, File file, MediaType.Kind kind,
+                            long lastModified, long size) {
+        AlbumItem albumItem = AlbumItem.getInstance(file.getPath(), kind);
+        if (albumItem != null) {
+            albumItem.setFileInfo(lastModified, size);
+            //only retrieve dates of new or changed files
+            if (!dateTakenCache.apply(albumItem, lastModified, size)
+                    && dateRetriever != null) {
+                dateRetriever.retrieveDate(context, albumItem);
             }
+            currentAlbum.addAlbumItem(albumItem);
         }
     }
 
     @Override
     public void onDirDone(Activity context) {
         if (currentAlbum != null && currentAlbum.getAlbumItems().size() > 0) {
+            currentAlbum.setContainsNoMedia(containsNoMedia);
             albums.add(currentAlbum);
             currentAlbum = null;
         }
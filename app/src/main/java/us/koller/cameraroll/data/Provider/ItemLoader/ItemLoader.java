@@ -7,10 +7,11 @@ import java.util.ArrayList;
 
 import us.koller.cameraroll.data.Album;
 import us.koller.cameraroll.data.File_POJO;
+import us.koller.cameraroll.util.MediaType;
 
 public abstract class ItemLoader {
 
-    public class Result {
+    public static class Result {
         public ArrayList<Album> albums;
         public File_POJO files;
     }
@@ -33,6 +34,13 @@ public abstract class ItemLoader {
 
     public abstract void onFile(Activity context, File file);
 
+    //called by the StorageCrawler, that already classified and stat'ed the file;
+    //everything else (non-media files, dirs) is passed to onFile()
+    public void onMediaFile(Activity context, File file, MediaType.Kind kind,
+                            long lastModified, long size) {
+        onFile(context, file);
+    }
+
     public abstract void onDirDone(Activity context);
 
     public abstract Result getResult();
@@ -0,0 +1,365 @@
+package us.koller.cameraroll.data.Provider;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+import us.koller.cameraroll.data.Album;
+import us.koller.cameraroll.data.AlbumItem;
+import us.koller.cameraroll.data.Settings;
+import us.koller.cameraroll.util.DateTakenCache;
+
+//persistent index of the last storage crawl, saved in app-private storage;
+//lets the StorageRetriever restore albums without touching the storage
+//and only re-list directories whose lastModified() changed since the last crawl;
+//a second index keeps the hidden folders found by the MediaStoreRetriever
+public class MediaIndex {
+
+    //lastModified has a coarse granularity on some file systems (2s on FAT),
+    //changes made within this window of listing a dir might not move its lastModified
+    private static final long RACY_WINDOW = 2000;
+
+    private static final String INDEX_FILE_NAME = "media_index";
+    private static final String HIDDEN_FOLDERS_INDEX_FILE_NAME = "hidden_folders_index";
+    private static final int VERSION = 5;
+
+    public static class Dir {
+        private String path;
+        private long lastModified;
+        //time the dir was listed
+        private long listedAt;
+        //dir contains a .nomedia file
+        private boolean noMedia;
+        private ArrayList<String> subDirs;
+        private ArrayList<Item> items;
+
+        private int generation;
+
+        //album built from this dir, reused as long as the dir doesn't change (not saved)
+        private Album album;
+
+        Dir(String path, long lastModified, long listedAt) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.listedAt = listedAt;
+            subDirs = new ArrayList<>();
+            items = new ArrayList<>();
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setNoMedia(boolean noMedia) {
+            this.noMedia = noMedia;
+        }
+
+        public void addSubDir(File dir) {
+            subDirs.add(dir.getName());
+        }
+
+        public void addItem(File file) {
+            addItem(file.getName(), file.length(), file.lastModified());
+        }
+
+        public void addItem(String name, long size, long lastModified) {
+            items.add(new Item(name, size, lastModified));
+        }
+
+        public File[] getSubDirs() {
+            File[] subDirs = new File[this.subDirs.size()];
+            for (int i = 0; i < subDirs.length; i++) {
+                subDirs[i] = new File(path, this.subDirs.get(i));
+            }
+            return subDirs;
+        }
+
+        public ArrayList<Item> getItems() {
+            return items;
+        }
+
+        //dir might have changed without moving its lastModified
+        private boolean isRacy() {
+            return lastModified >= listedAt - RACY_WINDOW;
+        }
+    }
+
+    public static class Item {
+        private String name;
+        private long size;
+        private long lastModified;
+
+        Item(String name, long size, long lastModified) {
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private static MediaIndex instance;
+    private static MediaIndex hiddenFoldersInstance;
+
+    private String fileName;
+
+    //items were listed with the additional file types (MediaType), or without them
+    private boolean additionalFileTypes;
+
+    private ConcurrentHashMap<String, Dir> dirs;
+
+    private volatile int generation;
+
+    public static synchronized MediaIndex getInstance(Context context) {
+        boolean additionalFileTypes = Settings.getInstance(context).useAdditionalFileTypes();
+        if (instance == null) {
+            instance = new MediaIndex(INDEX_FILE_NAME, additionalFileTypes);
+            instance.load(context);
+        } else if (instance.additionalFileTypes != additionalFileTypes) {
+            //setting changed, the indexed dirs miss (or contain) the additional file types
+            instance = new MediaIndex(INDEX_FILE_NAME, additionalFileTypes);
+        }
+        return instance;
+    }
+
+    public static synchronized MediaIndex getHiddenFoldersInstance(Context context) {
+        boolean additionalFileTypes = Settings.getInstance(context).useAdditionalFileTypes();
+        if (hiddenFoldersInstance == null) {
+            hiddenFoldersInstance = new MediaIndex(HIDDEN_FOLDERS_INDEX_FILE_NAME, additionalFileTypes);
+            hiddenFoldersInstance.load(context);
+        } else if (hiddenFoldersInstance.additionalFileTypes != additionalFileTypes) {
+            hiddenFoldersInstance = new MediaIndex(HIDDEN_FOLDERS_INDEX_FILE_NAME, additionalFileTypes);
+        }
+        return hiddenFoldersInstance;
+    }
+
+    MediaIndex(String fileName, boolean additionalFileTypes) {
+        this.fileName = fileName;
+        this.additionalFileTypes = additionalFileTypes;
+        dirs = new ConcurrentHashMap<>();
+        generation = 0;
+    }
+
+    public boolean isEmpty() {
+        return dirs.isEmpty();
+    }
+
+    //restore albums straight from the index
+    public ArrayList<Album> getAlbums(Context context) {
+        DateTakenCache dateTakenCache = DateTakenCache.getInstance(context);
+        ArrayList<Album> albums = new ArrayList<>();
+        for (Dir dir : dirs.values()) {
+            Album album = getAlbum(dir, dateTakenCache);
+            if (album != null) {
+                albums.add(album);
+            }
+        }
+        return albums;
+    }
+
+    //album of an unchanged dir; the same instance is returned, until the dir changes;
+    //lastModified & size of the items are the ones of the last listing:
+    //a file rewritten in place doesn't move the lastModified of its dir,
+    //MediaWatcher.verify() re-stats the items of an album, once it's shown
+    public Album getAlbum(Context context, Dir dir) {
+        return getAlbum(dir, DateTakenCache.getInstance(context));
+    }
+
+    public void setAlbum(Dir dir, Album album) {
+        dir.album = album;
+    }
+
+    private static Album getAlbum(Dir dir, DateTakenCache dateTakenCache) {
+        if (dir.items.size() == 0) {
+            return null;
+        }
+
+        synchronized (dir) {
+            if (dir.album == null) {
+                dir.album = buildAlbum(dir, dateTakenCache);
+            }
+            return dir.album;
+        }
+    }
+
+    private static Album buildAlbum(Dir dir, DateTakenCache dateTakenCache) {
+        Album album = new Album().setPath(dir.path)
+                .setContainsNoMedia(dir.noMedia);
+        for (int i = 0; i < dir.items.size(); i++) {
+            Item item = dir.items.get(i);
+            AlbumItem albumItem = AlbumItem.getInstance(dir.path + "/" + item.name);
+            if (albumItem != null) {
+                //no need to stat the file, the index knows lastModified and size
+                albumItem.setFileInfo(item.lastModified, item.size);
+                dateTakenCache.apply(albumItem, item.lastModified, item.size);
+                album.addAlbumItem(albumItem);
+            }
+        }
+        return album.getAlbumItems().size() > 0 ? album : null;
+    }
+
+    //start a new crawl; dirs not visited during the crawl are removed by finishCrawl()
+    public void startCrawl() {
+        generation++;
+    }
+
+    public void finishCrawl() {
+        Iterator<Dir> iterator = dirs.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().generation != generation) {
+                iterator.remove();
+            }
+        }
+    }
+
+    //after finishCrawl() of a full crawl, the index holds every media file of the storage:
+    //drops the cached dates of all other files
+    public void retainDatesTaken(DateTakenCache dateTakenCache) {
+        dateTakenCache.startRetain();
+        for (Dir dir : dirs.values()) {
+            for (int i = 0; i < dir.items.size(); i++) {
+                dateTakenCache.retain(dir.path + "/" + dir.items.get(i).name);
+            }
+        }
+        dateTakenCache.finishRetain();
+    }
+
+    //returns the indexed dir if it didn't change since the last crawl, null otherwise
+    public Dir getDirIfUnchanged(File file) {
+        Dir dir = dirs.get(file.getPath());
+        if (dir != null) {
+            long lastModified = file.lastModified();
+            if (lastModified != 0 && lastModified == dir.lastModified && !dir.isRacy()) {
+                dir.generation = generation;
+                return dir;
+            }
+        }
+        return null;
+    }
+
+    //keep the indexed dirs of a subtree, that wasn't crawled
+    public void keepSubtree(File file) {
+        String path = file.getPath();
+        String prefix = path + "/";
+        for (Dir dir : dirs.values()) {
+            if (dir.path.equals(path) || dir.path.startsWith(prefix)) {
+                dir.generation = generation;
+            }
+        }
+    }
+
+    //lastModified needs to be read before listing the dir,
+    //so changes made while listing are picked up by the next crawl
+    public Dir newDir(File file) {
+        return new Dir(file.getPath(), file.lastModified(), System.currentTimeMillis());
+    }
+
+    public void putDir(Dir dir) {
+        dir.generation = generation;
+        dirs.put(dir.path, dir);
+    }
+
+    private void load(Context context) {
+        long startTime = System.currentTimeMillis();
+        try {
+            DataInputStream is = new DataInputStream(new BufferedInputStream(
+                    context.openFileInput(fileName)));
+            try {
+                read(is);
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            // no index saved yet, or index corrupt
+            dirs.clear();
+        }
+        Log.d("MediaIndex", "load(" + fileName + "): " + String.valueOf(dirs.size()) + " dirs, "
+                + String.valueOf(System.currentTimeMillis() - startTime) + " ms");
+    }
+
+    //an index of another version, or listed with other file types, is dropped
+    void read(DataInputStream is) throws IOException {
+        if (is.readInt() != VERSION || is.readBoolean() != additionalFileTypes) {
+            return;
+        }
+        int dirCount = is.readInt();
+        for (int i = 0; i < dirCount; i++) {
+            Dir dir = new Dir(is.readUTF(), is.readLong(), is.readLong());
+            dir.noMedia = is.readBoolean();
+            int subDirCount = is.readInt();
+            for (int k = 0; k < subDirCount; k++) {
+                dir.subDirs.add(is.readUTF());
+            }
+            int itemCount = is.readInt();
+            for (int k = 0; k < itemCount; k++) {
+                dir.items.add(new Item(is.readUTF(),
+                        is.readLong(), is.readLong()));
+            }
+            dir.generation = generation;
+            dirs.put(dir.path, dir);
+        }
+    }
+
+    public synchronized void save(Context context) {
+        String tempFileName = fileName + ".tmp";
+        try {
+            DataOutputStream os = new DataOutputStream(new BufferedOutputStream(
+                    context.openFileOutput(tempFileName, Context.MODE_PRIVATE)));
+            try {
+                write(os);
+            } finally {
+                os.close();
+            }
+            //replace old index
+            //noinspection ResultOfMethodCallIgnored
+            context.getFileStreamPath(tempFileName)
+                    .renameTo(context.getFileStreamPath(fileName));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    void write(DataOutputStream os) throws IOException {
+        ArrayList<Dir> dirs = new ArrayList<>(this.dirs.values());
+        os.writeInt(VERSION);
+        os.writeBoolean(additionalFileTypes);
+        os.writeInt(dirs.size());
+        for (int i = 0; i < dirs.size(); i++) {
+            Dir dir = dirs.get(i);
+            os.writeUTF(dir.path);
+            os.writeLong(dir.lastModified);
+            os.writeLong(dir.listedAt);
+            os.writeBoolean(dir.noMedia);
+            os.writeInt(dir.subDirs.size());
+            for (int k = 0; k < dir.subDirs.size(); k++) {
+                os.writeUTF(dir.subDirs.get(k));
+            }
+            os.writeInt(dir.items.size());
+            for (int k = 0; k < dir.items.size(); k++) {
+                Item item = dir.items.get(k);
+                os.writeUTF(item.name);
+                os.writeLong(item.size);
+                os.writeLong(item.lastModified);
+            }
+        }
+    }
+}
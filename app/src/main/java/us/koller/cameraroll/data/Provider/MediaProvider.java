@@ -13,6 +13,7 @@ import java.util.ArrayList;
 
 import us.koller.cameraroll.data.Album;
 import us.koller.cameraroll.data.AlbumItem;
+import us.koller.cameraroll.data.Provider.Retriever.HybridRetriever;
 import us.koller.cameraroll.data.Provider.Retriever.MediaStoreRetriever;
 import us.koller.cameraroll.data.Provider.Retriever.StorageRetriever;
 import us.koller.cameraroll.data.Settings;
@@ -23,11 +24,36 @@ public class MediaProvider extends Provider {
     private static ArrayList<Album> albums;
 
     public abstract static class Callback implements Provider.Callback {
+        //called once all albums are loaded
         public abstract void onMediaLoaded(ArrayList<Album> albums);
+
+        //streamed while loading (from a background thread)
+        //albums not delivered before
+        public void onAlbumsAdded(ArrayList<Album> albums) {
+
+        }
+
+        //new content for an album with the same path as one delivered before
+        public void onAlbumUpdated(Album album) {
+
+        }
+
+        //loading progress (on the ui thread)
+        public void onProgress(int dirsVisited, int itemsFound) {
+
+        }
+
+        //albums found so far, when loading takes longer (on the ui thread);
+        //loading continues, onMediaLoaded() is called once it's done
+        public void onPartialResult(ArrayList<Album> albums) {
+
+        }
     }
 
     private static final int MODE_STORAGE = 1;
     private static final int MODE_MEDIASTORE = 2;
+    //MediaStore, completed by a background storage search
+    private static final int MODE_HYBRID = 3;
 
     public static final String FILE_TYPE_NO_MEDIA = ".nomedia";
     public static final int PERMISSION_REQUEST_CODE = 16;
@@ -68,6 +94,9 @@ public class MediaProvider extends Provider {
             case MODE_MEDIASTORE:
                 retriever = new MediaStoreRetriever();
                 break;
+            case MODE_HYBRID:
+                retriever = new HybridRetriever();
+                break;
         }
 
         if (retriever != null) {
@@ -77,21 +106,62 @@ public class MediaProvider extends Provider {
                     new Callback() {
                         @Override
                         public void onMediaLoaded(ArrayList<Album> albums) {
-                            if (!hiddenFolders) {
-                                //remove excluded albums
-                                for (int i = albums.size() - 1; i >= 0; i--) {
-                                    if (albums.get(i).excluded) {
-                                        albums.remove(i);
-                                    }
-                                }
+                            //the retrievers list might have been handed out before
+                            albums = new ArrayList<>(albums);
+                            prepareAlbums(context, albums, hiddenFolders);
+
+                            setAlbums(albums);
+                            //apply changes to the albums dirs, without reloading
+                            MediaWatcher.getInstance(context).watch(albums);
+                            Callback callback = getCallback();
+                            if (callback != null) {
+                                callback.onMediaLoaded(albums);
                             }
+                        }
+
+                        @Override
+                        public void onAlbumsAdded(ArrayList<Album> albums) {
+                            albums = new ArrayList<>(albums);
+                            prepareAlbums(context, albums, hiddenFolders);
 
-                            SortUtil.sortAlbums(context, albums);
+                            Callback callback = getCallback();
+                            if (callback != null && albums.size() > 0) {
+                                callback.onAlbumsAdded(albums);
+                            }
+                        }
 
+                        @Override
+                        public void onAlbumUpdated(Album album) {
+                            if (!hiddenFolders && album.excluded) {
+                                return;
+                            }
+                            SortUtil.sortNewAlbum(album,
+                                    Settings.getInstance(context).sortAlbumBy());
+
+                            Callback callback = getCallback();
+                            if (callback != null) {
+                                callback.onAlbumUpdated(album);
+                            }
+                        }
+
+                        @Override
+                        public void onProgress(int dirsVisited, int itemsFound) {
+                            Callback callback = getCallback();
+                            if (callback != null) {
+                                callback.onProgress(dirsVisited, itemsFound);
+                            }
+                        }
+
+                        @Override
+                        public void onPartialResult(ArrayList<Album> albums) {
+                            albums = new ArrayList<>(albums);
+                            prepareAlbums(context, albums, hiddenFolders);
+
+                            //so albums can already be opened
                             setAlbums(albums);
                             Callback callback = getCallback();
                             if (callback != null) {
-                                callback.onMediaLoaded(albums);
+                                callback.onPartialResult(albums);
                             }
                         }
 
@@ -118,6 +188,20 @@ public class MediaProvider extends Provider {
         }
     }
 
+    private static void prepareAlbums(Activity context, ArrayList<Album> albums,
+                                      boolean hiddenFolders) {
+        if (!hiddenFolders) {
+            //remove excluded albums
+            for (int i = albums.size() - 1; i >= 0; i--) {
+                if (albums.get(i).excluded) {
+                    albums.remove(i);
+                }
+            }
+        }
+
+        SortUtil.sortAlbums(context, albums);
+    }
+
     private static void setAlbums(ArrayList<Album> albums) {
         MediaProvider.albums = albums;
     }
@@ -143,12 +227,15 @@ public class MediaProvider extends Provider {
     public static Album getErrorAlbum() {
         //Error album
         Album album = new Album().setPath("ERROR");
-        album.getAlbumItems().add(AlbumItem.getErrorItem());
+        album.addAlbumItem(AlbumItem.getErrorItem());
         return album;
     }
 
     private static int getMode(Context context) {
-        return Settings.getInstance(context).useStorageRetriever() ?
-                MODE_STORAGE : MODE_MEDIASTORE;
+        Settings settings = Settings.getInstance(context);
+        if (settings.useStorageRetriever()) {
+            return MODE_STORAGE;
+        }
+        return settings.useHybridRetriever() ? MODE_HYBRID : MODE_MEDIASTORE;
     }
 }
\ No newline at end of file
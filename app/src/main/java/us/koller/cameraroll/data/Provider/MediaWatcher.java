@@ -0,0 +1,434 @@
+package us.koller.cameraroll.data.Provider;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import us.koller.cameraroll.data.Album;
+import us.koller.cameraroll.data.AlbumItem;
+import us.koller.cameraroll.data.Settings;
+import us.koller.cameraroll.util.DateTakenRetriever;
+import us.koller.cameraroll.util.MediaType;
+import us.koller.cameraroll.util.SortUtil;
+import us.koller.cameraroll.util.StorageUtil;
+
+//watches the dirs of the loaded albums with FileObservers;
+//created, deleted and moved files are coalesced and applied to MediaProvider's albums,
+//instead of reloading all media
+public class MediaWatcher {
+
+    public interface Listener {
+        //called on the ui thread, after the album was updated;
+        //an album is removed from MediaProvider's albums, once its last item was removed
+        //(after the listeners were called)
+        void onItemInserted(Album album, AlbumItem albumItem, int position);
+
+        void onItemRemoved(Album album, AlbumItem albumItem, int position);
+
+        //the file of the item was written (e.g. exif changed), its thumbnail needs to be reloaded
+        void onItemChanged(Album album, AlbumItem albumItem, int position);
+
+        //the items of a windowed album were loaded in the background
+        void onItemsLoaded(Album album);
+
+        //an item was repositioned, after its date changed (see resort())
+        void onItemMoved(Album album, int fromPosition, int toPosition);
+    }
+
+    private static final int EVENTS = FileObserver.CREATE | FileObserver.CLOSE_WRITE
+            | FileObserver.MOVED_TO | FileObserver.DELETE | FileObserver.MOVED_FROM;
+
+    //time to wait for more events, before applying them
+    private static final long COALESCE_DELAY = 500;
+
+    private static final int ADDED = 1;
+    private static final int REMOVED = 2;
+
+    private static MediaWatcher instance;
+
+    private Context context;
+    private Handler handler;
+    //coalesces the events and resolves the state of their files, off the ui thread
+    private Handler backgroundHandler;
+
+    //dir path --> observer
+    private HashMap<String, DirObserver> observers;
+
+    //path --> last event (ADDED or REMOVED), guarded by itself
+    private final LinkedHashMap<String, Integer> pendingEvents;
+
+    private ArrayList<Listener> listeners;
+
+    public static synchronized MediaWatcher getInstance(Context context) {
+        if (instance == null) {
+            instance = new MediaWatcher(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MediaWatcher(Context context) {
+        this.context = context;
+        handler = new Handler(Looper.getMainLooper());
+        HandlerThread backgroundThread = new HandlerThread("MediaWatcher");
+        backgroundThread.start();
+        backgroundHandler = new Handler(backgroundThread.getLooper());
+        observers = new HashMap<>();
+        pendingEvents = new LinkedHashMap<>();
+        listeners = new ArrayList<>();
+    }
+
+    public void addListener(Listener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    //derive the watched dirs from the albums
+    public synchronized void watch(ArrayList<Album> albums) {
+        HashSet<String> paths = new HashSet<>();
+        for (int i = 0; i < albums.size(); i++) {
+            paths.add(albums.get(i).getPath());
+        }
+
+        //stop watching dirs of albums, that are gone
+        Iterator<Map.Entry<String, DirObserver>> iterator = observers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, DirObserver> entry = iterator.next();
+            if (!paths.contains(entry.getKey())) {
+                entry.getValue().stopWatching();
+                iterator.remove();
+            }
+        }
+
+        for (String path : paths) {
+            if (!observers.containsKey(path)) {
+                DirObserver observer = new DirObserver(path);
+                observer.startWatching();
+                observers.put(path, observer);
+            }
+        }
+        Log.d("MediaWatcher", "watch(): " + String.valueOf(observers.size()) + " dirs");
+    }
+
+    public synchronized void stopWatching() {
+        for (DirObserver observer : observers.values()) {
+            observer.stopWatching();
+        }
+        observers.clear();
+        synchronized (pendingEvents) {
+            pendingEvents.clear();
+        }
+        backgroundHandler.removeCallbacks(applyEvents);
+    }
+
+    //items of unchanged dirs are restored from the MediaIndex with the file info of the last crawl,
+    //a file rewritten in place doesn't move the lastModified of its dir:
+    //re-stat the items of a shown album in the background, changed ones are reported by onItemChanged()
+    public void verify(final Album album) {
+        //items of windowed albums come fresh from the MediaStore
+        if (!album.areItemsLoaded()) {
+            return;
+        }
+        final ArrayList<AlbumItem> albumItems = new ArrayList<>(album.getAlbumItems());
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ArrayList<AlbumItem> changedItems = new ArrayList<>();
+                final ArrayList<long[]> fileInfos = new ArrayList<>();
+                for (int i = 0; i < albumItems.size(); i++) {
+                    AlbumItem albumItem = albumItems.get(i);
+                    File file = new File(albumItem.getPath());
+                    long lastModified = file.lastModified();
+                    long size = file.length();
+                    //lastModified == 0: file is gone, that's up to the FileObserver
+                    if (lastModified != 0 && (lastModified != albumItem.getLastModified()
+                            || size != albumItem.getSize())) {
+                        changedItems.add(albumItem);
+                        fileInfos.add(new long[]{lastModified, size});
+                    }
+                }
+
+                if (changedItems.size() == 0) {
+                    return;
+                }
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        ArrayList<AlbumItem> albumItems = album.getAlbumItems();
+                        for (int i = 0; i < changedItems.size(); i++) {
+                            int position = albumItems.indexOf(changedItems.get(i));
+                            if (position != -1) {
+                                long[] fileInfo = fileInfos.get(i);
+                                onItemChanged(album, position, fileInfo[0], fileInfo[1]);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    //called on the ui thread, when the app rewrote the file itself (e.g. exif saved, or overwritten by a move):
+    //the item re-reads its file info (new glide signature), listeners are told by onItemChanged()
+    public void invalidate(String path) {
+        ArrayList<Album> albums = MediaProvider.getAlbums();
+        if (albums == null) {
+            return;
+        }
+
+        String albumPath = new File(path).getParent();
+        for (int i = 0; i < albums.size(); i++) {
+            Album album = albums.get(i);
+            if (!album.getPath().equals(albumPath) || !album.areItemsLoaded()) {
+                continue;
+            }
+
+            int position = indexOf(album, path);
+            if (position != -1) {
+                AlbumItem albumItem = album.getAlbumItems().get(position);
+                albumItem.invalidateFileInfo();
+                for (int k = 0; k < listeners.size(); k++) {
+                    listeners.get(k).onItemChanged(album, albumItem, position);
+                }
+            }
+        }
+    }
+
+    //called on the ui thread
+    public void onItemsLoaded(Album album) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onItemsLoaded(album);
+        }
+    }
+
+    //called on the ui thread, right after the dates of the changedItems were set;
+    //only the changed items are repositioned, every listener is told about the moves
+    public void resort(Album album, ArrayList<AlbumItem> changedItems) {
+        Comparator<SortUtil.Sortable> comparator
+                = SortUtil.getComparator(Settings.getInstance(context).sortAlbumBy());
+        if (comparator == null) {
+            return;
+        }
+
+        ArrayList<int[]> moves = SortUtil.resort(album.getAlbumItems(), changedItems, comparator);
+        for (int i = 0; i < moves.size(); i++) {
+            for (int k = 0; k < listeners.size(); k++) {
+                listeners.get(k).onItemMoved(album, moves.get(i)[0], moves.get(i)[1]);
+            }
+        }
+    }
+
+    //called from the FileObserver thread
+    private void onEvent(String path, int event) {
+        synchronized (pendingEvents) {
+            boolean scheduled = pendingEvents.size() > 0;
+            //only the last event of a path counts
+            pendingEvents.remove(path);
+            pendingEvents.put(path, event);
+            if (!scheduled) {
+                backgroundHandler.postDelayed(applyEvents, COALESCE_DELAY);
+            }
+        }
+    }
+
+    //state of the file of an event, resolved in the background
+    private static class Change {
+        private String path;
+        private int event;
+        private long lastModified;
+        private long size;
+        //new item, with its date already retrieved
+        private AlbumItem albumItem;
+
+        Change(String path, int event) {
+            this.path = path;
+            this.event = event;
+        }
+    }
+
+    //runs on the background thread: stats the files and prepares new items,
+    //only the changes of the albums are posted to the ui thread
+    private final Runnable applyEvents = new Runnable() {
+        @Override
+        public void run() {
+            ArrayList<Map.Entry<String, Integer>> events;
+            synchronized (pendingEvents) {
+                events = new ArrayList<>(pendingEvents.entrySet());
+                pendingEvents.clear();
+            }
+
+            final ArrayList<Change> changes = new ArrayList<>();
+            for (int i = 0; i < events.size(); i++) {
+                Change change = new Change(events.get(i).getKey(), events.get(i).getValue());
+                File file = new File(change.path);
+                boolean exists = file.exists();
+                if (change.event == ADDED) {
+                    if (!exists) {
+                        continue;
+                    }
+                    change.lastModified = file.lastModified();
+                    change.size = file.length();
+                    change.albumItem = AlbumItem.getInstance(change.path);
+                    if (change.albumItem == null) {
+                        continue;
+                    }
+                    change.albumItem.setFileInfo(change.lastModified, change.size);
+                    //the date decides the position of the new item (cached, or read from the file)
+                    DateTakenRetriever.tryToRetrieveDateTaken(context, change.albumItem);
+                } else if (exists) {
+                    //moved back, before the events were applied
+                    continue;
+                }
+                changes.add(change);
+            }
+
+            if (changes.size() > 0) {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        applyChanges(changes);
+                    }
+                });
+            }
+        }
+    };
+
+    //called on the ui thread
+    private void applyChanges(ArrayList<Change> changes) {
+        ArrayList<Album> albums = MediaProvider.getAlbums();
+        if (albums == null) {
+            return;
+        }
+
+        HashMap<String, Album> albumsByPath = new HashMap<>();
+        for (int i = 0; i < albums.size(); i++) {
+            albumsByPath.put(albums.get(i).getPath(), albums.get(i));
+        }
+
+        int sortBy = Settings.getInstance(context).sortAlbumBy();
+        for (int i = 0; i < changes.size(); i++) {
+            Change change = changes.get(i);
+            Album album = albumsByPath.get(new File(change.path).getParent());
+            //items of windowed albums are up to date, once they are loaded
+            if (album == null || !album.areItemsLoaded()) {
+                continue;
+            }
+
+            if (change.event == ADDED) {
+                onItemAdded(album, change, sortBy);
+            } else {
+                onItemRemoved(albums, album, change.path);
+            }
+        }
+    }
+
+    private void onItemAdded(Album album, Change change, int sortBy) {
+        int index = indexOf(album, change.path);
+        if (index != -1) {
+            onItemChanged(album, index, change.lastModified, change.size);
+            return;
+        }
+
+        AlbumItem albumItem = change.albumItem;
+        //binary insertion, instead of sorting the whole album
+        int position;
+        Comparator<SortUtil.Sortable> comparator = SortUtil.getComparator(sortBy);
+        if (comparator != null) {
+            position = SortUtil.getInsertionIndex(album.getAlbumItems(), albumItem, comparator);
+        } else {
+            position = album.getItemCount();
+        }
+        album.addAlbumItem(position, albumItem);
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onItemInserted(album, albumItem, position);
+        }
+    }
+
+    private void onItemChanged(Album album, int position, long lastModified, long size) {
+        AlbumItem albumItem = album.getAlbumItems().get(position);
+        if (albumItem.getLastModified() == lastModified && albumItem.getSize() == size) {
+            return;
+        }
+
+        //new glide signature
+        albumItem.setFileInfo(lastModified, size);
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onItemChanged(album, albumItem, position);
+        }
+    }
+
+    private void onItemRemoved(ArrayList<Album> albums, Album album, String path) {
+        int position = indexOf(album, path);
+        if (position == -1) {
+            return;
+        }
+
+        AlbumItem albumItem = album.removeAlbumItem(position);
+        StorageUtil.invalidateContentUri(path);
+
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onItemRemoved(album, albumItem, position);
+        }
+
+        //listeners might already have removed the empty album, when they share MediaProvider's albums
+        if (album.getAlbumItems().size() == 0) {
+            albums.remove(album);
+        }
+    }
+
+    private static int indexOf(Album album, String path) {
+        ArrayList<AlbumItem> albumItems = album.getAlbumItems();
+        for (int i = 0; i < albumItems.size(); i++) {
+            if (albumItems.get(i).getPath().equals(path)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private class DirObserver extends FileObserver {
+
+        private String path;
+
+        DirObserver(String path) {
+            super(path, EVENTS);
+            this.path = path;
+        }
+
+        @Override
+        public void onEvent(int event, String name) {
+            if (name == null || !MediaType.isMedia(name)) {
+                return;
+            }
+
+            switch (event & ALL_EVENTS) {
+                case CREATE:
+                case CLOSE_WRITE:
+                case MOVED_TO:
+                    MediaWatcher.this.onEvent(path + "/" + name, ADDED);
+                    break;
+                case DELETE:
+                case MOVED_FROM:
+                    MediaWatcher.this.onEvent(path + "/" + name, REMOVED);
+                    break;
+            }
+        }
+    }
+}
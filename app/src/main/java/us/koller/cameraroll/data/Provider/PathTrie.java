@@ -0,0 +1,99 @@
+package us.koller.cameraroll.data.Provider;
+
+import java.util.HashMap;
+import java.util.List;
+
+//prefix trie over path segments, compiled from a list of dir paths;
+//a path matches, if it is one of the dirs, or lies inside of one,
+//matching cost only depends on the depth of the path, not on the number of dirs
+class PathTrie {
+
+    private static class Node {
+        private boolean terminal;
+        //segment --> child, a single lookup per segment, however many dirs share the parent
+        private HashMap<String, Node> children;
+
+        private Node getChild(String segment) {
+            if (children == null) {
+                return null;
+            }
+            return children.get(segment);
+        }
+
+        private Node addChild(String segment) {
+            Node child = getChild(segment);
+            if (child == null) {
+                child = new Node();
+                if (children == null) {
+                    children = new HashMap<>();
+                }
+                children.put(segment, child);
+            }
+            return child;
+        }
+    }
+
+    private Node root;
+
+    PathTrie(List<String> paths) {
+        root = new Node();
+        if (paths != null) {
+            for (int i = 0; i < paths.size(); i++) {
+                add(paths.get(i));
+            }
+        }
+    }
+
+    private void add(String path) {
+        if (path == null || path.length() == 0) {
+            return;
+        }
+
+        Node node = root;
+        int length = path.length();
+        int start = 0;
+        while (start < length) {
+            int end = path.indexOf('/', start);
+            if (end == -1) {
+                end = length;
+            }
+            //skip empty segments (leading, double or trailing slashes)
+            if (end > start) {
+                node = node.addChild(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        node.terminal = true;
+    }
+
+    boolean matches(String path) {
+        if (path == null) {
+            return false;
+        }
+
+        Node node = root;
+        if (node.terminal) {
+            return true;
+        }
+
+        int length = path.length();
+        int start = 0;
+        while (start < length) {
+            int end = path.indexOf('/', start);
+            if (end == -1) {
+                end = length;
+            }
+            if (end > start) {
+                node = node.getChild(path.substring(start, end));
+                if (node == null) {
+                    return false;
+                }
+                if (node.terminal) {
+                    return true;
+                }
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+}
@@ -25,6 +25,9 @@ public abstract class Provider {
     private static final String[] permanentlyExcludedPaths
             = {Environment.getExternalStorageDirectory().getPath() + "/Android"}; // "/storage/emulated/0/Android"
 
+    private static final PathTrie permanentlyExcludedPathsTrie
+            = new PathTrie(Arrays.asList(permanentlyExcludedPaths));
+
     // by default excluded folders:
     // not expecting relevant media in alarms, music or ringtone folder
     private static final String[] defaultExcludedPaths = {
@@ -74,25 +77,21 @@ public abstract class Provider {
     private static final String PINNED_PATHS_NAME = "pinned_paths.txt";
 
     private static ArrayList<String> pinnedPaths;
+    //compiled from pinnedPaths, rebuilt whenever they change
+    private static volatile PathTrie pinnedPathsTrie;
 
     public static ArrayList<String> getPinnedPaths() {
         return pinnedPaths;
     }
 
     public static boolean isAlbumPinned(String albumPath, ArrayList<String> pinnedPaths) {
-        if (pinnedPaths == null) {
+        //the list is only changed through pinPath(), unpinPath() & loadPinnedPaths(),
+        //which rebuild the trie
+        PathTrie trie = pinnedPathsTrie;
+        if (pinnedPaths == null || trie == null) {
             return false;
         }
-        if (pinnedPaths.contains(albumPath)) {
-            return true;
-        } else {
-            for (int i = 0; i < pinnedPaths.size(); i++) {
-                if (albumPath.contains(pinnedPaths.get(i))) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return trie.matches(albumPath);
     }
 
     public static void pinPath(Context context, String path) {
@@ -102,6 +101,7 @@ public abstract class Provider {
 
         if (!pinnedPaths.contains(path)) {
             pinnedPaths.add(path);
+            pinnedPathsTrie = new PathTrie(pinnedPaths);
         }
     }
 
@@ -111,6 +111,7 @@ public abstract class Provider {
         }
 
         pinnedPaths.remove(path);
+        pinnedPathsTrie = new PathTrie(pinnedPaths);
     }
 
     public static ArrayList<String> loadPinnedPaths(Context context) {
@@ -122,8 +123,9 @@ public abstract class Provider {
             // no file found
             pinnedPaths.addAll(Arrays.asList(defaultPinnedPaths));
         }
+        pinnedPathsTrie = new PathTrie(pinnedPaths);
 
-        return excludedPaths;
+        return pinnedPaths;
     }
 
     public static void savePinnedPaths(Context context) {
@@ -139,39 +141,21 @@ public abstract class Provider {
     private static final String EXCLUDED_PATHS_NAME = "excluded_paths.txt";
 
     private static ArrayList<String> excludedPaths;
+    //compiled from excludedPaths, rebuilt whenever they change
+    private static volatile PathTrie excludedPathsTrie;
 
     public static boolean isPathPermanentlyExcluded(String path) {
-        boolean permanentlyExcluded = false;
-        for (int i = 0; i < Provider.permanentlyExcludedPaths.length; i++) {
-            if (path.contains(Provider.permanentlyExcludedPaths[i])) {
-                permanentlyExcluded = true;
-                break;
-            }
-        }
-        return permanentlyExcluded;
+        return permanentlyExcludedPathsTrie.matches(path);
     }
 
     public static boolean searchDir(String path) {
         if (path == null) {
             return false;
         }
-        boolean search = true;
-        for (int i = 0; i < Provider.permanentlyExcludedPaths.length; i++) {
-            if (path.contains(Provider.permanentlyExcludedPaths[i])) {
-                search = false;
-                break;
-            }
-        }
+        boolean search = !permanentlyExcludedPathsTrie.matches(path);
 
-        //Provider are now taking care of excluded folders themselves
-        /*if (search && excludedPaths != null) {
-            for (int i = 0; i < Provider.excludedPaths.size(); i++) {
-                if (path.contains(Provider.excludedPaths.get(i))) {
-                    search = false;
-                    break;
-                }
-            }
-        }*/
+        //excluded folders are pruned by the StorageCrawler,
+        //unless they are shown (together with hidden folders)
 
         return search;
     }
@@ -181,18 +165,13 @@ public abstract class Provider {
             return true;
         }
 
-        if (excludedPaths == null) {
+        //the list is only changed through addExcludedPath(), removeExcludedPath() & loadExcludedPaths(),
+        //which rebuild the trie
+        PathTrie trie = excludedPathsTrie;
+        if (excludedPaths == null || trie == null) {
             return false;
         }
-
-        boolean excluded = false;
-        for (int i = 0; i < excludedPaths.size(); i++) {
-            if (path.contains(excludedPaths.get(i))) {
-                excluded = true;
-                break;
-            }
-        }
-        return excluded;
+        return trie.matches(path);
     }
 
     public static boolean isDirExcludedBecauseParentDirIsExcluded
@@ -222,6 +201,7 @@ public abstract class Provider {
 
         if (!excludedPaths.contains(path)) {
             excludedPaths.add(path);
+            excludedPathsTrie = new PathTrie(excludedPaths);
         }
     }
 
@@ -231,7 +211,7 @@ public abstract class Provider {
         }
 
         excludedPaths.remove(path);
-
+        excludedPathsTrie = new PathTrie(excludedPaths);
     }
 
     public static ArrayList<String> loadExcludedPaths(Context context) {
@@ -243,6 +223,7 @@ public abstract class Provider {
             // no file found
             excludedPaths.addAll(Arrays.asList(defaultExcludedPaths));
         }
+        excludedPathsTrie = new PathTrie(excludedPaths);
 
         return excludedPaths;
     }
@@ -0,0 +1,15 @@
+package us.koller.cameraroll.data.Provider.Retriever;
+
+//handed to long running loading work, cancelled from Provider.onDestroy()
+public class CancellationToken {
+
+    private volatile boolean cancelled = false;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,232 @@
+package us.koller.cameraroll.data.Provider.Retriever;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import us.koller.cameraroll.data.Album;
+import us.koller.cameraroll.data.AlbumItem;
+import us.koller.cameraroll.data.Provider.MediaProvider;
+
+//loading media through MediaStore first, then searching the Storage in the background
+//for what MediaStore is missing (e.g. dirs containing a .nomedia file, unindexed removable storage)
+//advantage: speed of MediaStore and all items, disadvantage: Storage is still searched every time
+public class HybridRetriever extends Retriever {
+
+    private MediaStoreRetriever mediaStoreRetriever;
+    private StorageRetriever storageRetriever;
+
+    //merged albums by path
+    private final LinkedHashMap<String, Album> albums = new LinkedHashMap<>();
+
+    @Override
+    void loadAlbums(final Activity context, final boolean hiddenFolders) {
+
+        final long startTime = System.currentTimeMillis();
+
+        final CancellationToken cancellationToken = getCancellationToken();
+
+        final Handler handler = new Handler(Looper.getMainLooper());
+
+        mediaStoreRetriever = new MediaStoreRetriever();
+        mediaStoreRetriever.loadAlbums(context, hiddenFolders, new MediaProvider.Callback() {
+            @Override
+            public void onAlbumsAdded(ArrayList<Album> albums) {
+                mergeAlbums(albums);
+            }
+
+            @Override
+            public void onMediaLoaded(ArrayList<Album> albums) {
+                mergeAlbums(albums);
+                flushAlbums();
+
+                Log.d("HybridRetriever", "MediaStore loaded: "
+                        + String.valueOf(System.currentTimeMillis() - startTime) + " ms");
+
+                //StorageRetriever needs to be started from the ui thread
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (cancellationToken.isCancelled()) {
+                            return;
+                        }
+
+                        //so albums can already be opened, while the storage is searched
+                        MediaProvider.Callback callback = getCallback();
+                        if (callback != null) {
+                            callback.onPartialResult(getMergedAlbums());
+                        }
+
+                        searchStorage(context, hiddenFolders, startTime);
+                    }
+                });
+            }
+
+            @Override
+            public void timeout() {
+                MediaProvider.Callback callback = getCallback();
+                if (callback != null) {
+                    callback.timeout();
+                }
+            }
+
+            @Override
+            public void needPermission() {
+                MediaProvider.Callback callback = getCallback();
+                if (callback != null) {
+                    callback.needPermission();
+                }
+            }
+        });
+    }
+
+    private void searchStorage(Activity context, boolean hiddenFolders, final long startTime) {
+        storageRetriever = new StorageRetriever();
+        //MediaStore results are already shown, don't compete with the ui
+        storageRetriever.setLowPriority(true);
+        storageRetriever.loadAlbums(context, hiddenFolders, new MediaProvider.Callback() {
+            @Override
+            public void onAlbumsAdded(ArrayList<Album> albums) {
+                mergeAlbums(albums);
+            }
+
+            @Override
+            public void onAlbumUpdated(Album album) {
+                mergeAlbum(album);
+            }
+
+            @Override
+            public void onProgress(int dirsVisited, int itemsFound) {
+                MediaProvider.Callback callback = getCallback();
+                if (callback != null) {
+                    callback.onProgress(dirsVisited, itemsFound);
+                }
+            }
+
+            @Override
+            public void onPartialResult(ArrayList<Album> albums) {
+                //MediaStore result was already delivered as partial result
+            }
+
+            @Override
+            public void onMediaLoaded(ArrayList<Album> albums) {
+                mergeAlbums(albums);
+                removeVanishedAlbums(albums);
+                flushAlbums();
+
+                MediaProvider.Callback callback = getCallback();
+                if (callback != null) {
+                    callback.onMediaLoaded(getMergedAlbums());
+                }
+                Log.d("HybridRetriever", "onMediaLoaded(): "
+                        + String.valueOf(System.currentTimeMillis() - startTime) + " ms");
+            }
+
+            @Override
+            public void timeout() {
+                MediaProvider.Callback callback = getCallback();
+                if (callback != null) {
+                    callback.timeout();
+                }
+            }
+
+            @Override
+            public void needPermission() {
+                MediaProvider.Callback callback = getCallback();
+                if (callback != null) {
+                    callback.needPermission();
+                }
+            }
+        });
+    }
+
+    private void mergeAlbums(ArrayList<Album> albums) {
+        for (int i = 0; i < albums.size(); i++) {
+            mergeAlbum(albums.get(i));
+        }
+    }
+
+    //albums missing from MediaStore are streamed as new albums;
+    //when the storage holds other items for a dir, the storage album replaces the MediaStore one
+    private synchronized void mergeAlbum(Album album) {
+        Album knownAlbum = albums.get(album.getPath());
+        if (knownAlbum == null) {
+            albums.put(album.getPath(), album);
+            addAlbum(album);
+        } else if (knownAlbum != album && !containSameItems(knownAlbum, album)) {
+            albums.put(album.getPath(), album);
+            MediaProvider.Callback callback = getCallback();
+            if (callback != null) {
+                callback.onAlbumUpdated(album);
+            }
+        }
+    }
+
+    //a new, removed or changed file moves the count or the newest lastModified
+    //(in seconds: DATE_MODIFIED has no finer granularity);
+    //the items themselves are only compared, if both albums have them loaded already
+    private static boolean containSameItems(Album album1, Album album2) {
+        if (album1.getItemCount() != album2.getItemCount()
+                || album1.getLastModified() / 1000 != album2.getLastModified() / 1000) {
+            return false;
+        }
+
+        if (album1.areItemsLoaded() && album2.areItemsLoaded()) {
+            //same count: each item of album2 needs to be in album1
+            ArrayList<AlbumItem> items = album1.copyAlbumItems();
+            HashSet<String> paths = new HashSet<>();
+            for (int i = 0; i < items.size(); i++) {
+                paths.add(items.get(i).getPath());
+            }
+            items = album2.copyAlbumItems();
+            for (int i = 0; i < items.size(); i++) {
+                if (!paths.contains(items.get(i).getPath())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    //MediaStore keeps the rows of deleted dirs, until it scans them again:
+    //once the storage was searched, drop the MediaStore albums it didn't find, whose dir is gone
+    private synchronized void removeVanishedAlbums(ArrayList<Album> storageAlbums) {
+        HashSet<String> storagePaths = new HashSet<>();
+        for (int i = 0; i < storageAlbums.size(); i++) {
+            storagePaths.add(storageAlbums.get(i).getPath());
+        }
+
+        int removed = 0;
+        Iterator<Album> iterator = albums.values().iterator();
+        while (iterator.hasNext()) {
+            String path = iterator.next().getPath();
+            if (!storagePaths.contains(path) && !new File(path).exists()) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        Log.d("HybridRetriever", "removeVanishedAlbums(): " + String.valueOf(removed) + " albums removed");
+    }
+
+    private synchronized ArrayList<Album> getMergedAlbums() {
+        return new ArrayList<>(albums.values());
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (mediaStoreRetriever != null) {
+            mediaStoreRetriever.onDestroy();
+        }
+        if (storageRetriever != null) {
+            storageRetriever.onDestroy();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package us.koller.cameraroll.data.Provider.Retriever;
 
 import android.app.Activity;
+import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.AsyncTask;
@@ -10,11 +11,18 @@ import android.util.Log;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import us.koller.cameraroll.data.Album;
 import us.koller.cameraroll.data.AlbumItem;
+import us.koller.cameraroll.data.Provider.MediaIndex;
 import us.koller.cameraroll.data.Provider.MediaProvider;
+import us.koller.cameraroll.data.Provider.MediaWatcher;
+import us.koller.cameraroll.data.Settings;
 import us.koller.cameraroll.util.MediaType;
+import us.koller.cameraroll.util.SortUtil;
 import us.koller.cameraroll.util.Util;
 
 //loading media through MediaStore
@@ -24,8 +32,19 @@ public class MediaStoreRetriever extends Retriever {
     private static final String[] projection = new String[]{
             MediaStore.Files.FileColumns.DATA,
             MediaStore.Files.FileColumns.PARENT,
-            MediaStore.Images.ImageColumns.DATE_TAKEN};
+            MediaStore.Images.ImageColumns.DATE_TAKEN,
+            MediaStore.Files.FileColumns.DATE_MODIFIED,
+            MediaStore.Files.FileColumns.SIZE};
 
+    // Return only video and image metadata.
+    private static final String selection = "(" + MediaStore.Files.FileColumns.MEDIA_TYPE + "="
+            + MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE
+            + " OR "
+            + MediaStore.Files.FileColumns.MEDIA_TYPE + "="
+            + MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO + ")";
+
+    //newest items first
+    private static final String sortOrder = MediaStore.Images.ImageColumns.DATE_TAKEN + " DESC";
 
     @Override
     void loadAlbums(final Activity context, boolean hiddenFolders) {
@@ -34,12 +53,12 @@ public class MediaStoreRetriever extends Retriever {
 
         final ArrayList<Album> albums = new ArrayList<>();
 
-        // Return only video and image metadata.
-        String selection = MediaStore.Files.FileColumns.MEDIA_TYPE + "="
-                + MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE
-                + " OR "
-                + MediaStore.Files.FileColumns.MEDIA_TYPE + "="
-                + MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO;
+        final Context applicationContext = context.getApplicationContext();
+
+        //hidden folders are searched once the first albums were delivered,
+        //in parallel to processing the rest of the cursor
+        final HiddenFoldersTask hiddenFoldersTask
+                = hiddenFolders ? new HiddenFoldersTask(applicationContext) : null;
 
         Uri queryUri = MediaStore.Files.getContentUri("external");
 
@@ -49,7 +68,8 @@ public class MediaStoreRetriever extends Retriever {
                 projection,
                 selection,
                 null, // Selection args (none).
-                MediaStore.Files.FileColumns.DATE_ADDED);
+                //grouped by bucket, newest item of each bucket first
+                MediaStore.Files.FileColumns.PARENT + ", " + sortOrder);
 
         final Cursor cursor = cursorLoader.loadInBackground();
 
@@ -57,53 +77,77 @@ public class MediaStoreRetriever extends Retriever {
             return;
         }
 
-        //search hiddenFolders
-        if (hiddenFolders) {
-            ArrayList<Album> hiddenAlbums = checkHiddenFolders(context);
-            albums.addAll(hiddenAlbums);
-        }
-
         AsyncTask.execute(new Runnable() {
             @Override
             public void run() {
+                //only read the bucket aggregates (count, newest date, size, cover);
+                //the items of an album are loaded from their bucket, once they are needed
                 if (cursor.moveToFirst()) {
-                    String path;
-                    long dateTaken;
                     int pathColumn = cursor.getColumnIndex(MediaStore.Files.FileColumns.DATA);
+                    int parentColumn = cursor.getColumnIndex(MediaStore.Files.FileColumns.PARENT);
                     int dateTakenColumn = cursor.getColumnIndex(MediaStore.Images.ImageColumns.DATE_TAKEN);
+                    int dateModifiedColumn = cursor.getColumnIndex(MediaStore.Files.FileColumns.DATE_MODIFIED);
+                    int sizeColumn = cursor.getColumnIndex(MediaStore.Files.FileColumns.SIZE);
 
+                    BucketAggregate aggregate = new BucketAggregate();
+
+                    final CancellationToken cancellationToken = getCancellationToken();
                     do {
-                        path = cursor.getString(pathColumn);
-                        dateTaken = cursor.getLong(dateTakenColumn);
-
-                        AlbumItem albumItem = AlbumItem.getInstance(path);
-                        if (albumItem != null) {
-                            albumItem.setDate(dateTaken);
-                            //search bucket
-                            boolean foundBucket = false;
-                            for (int i = 0; i < albums.size(); i++) {
-                                if (albums.get(i).getPath().equals(Util.getParentPath(path))) {
-                                    albums.get(i).getAlbumItems().add(0, albumItem);
-                                    foundBucket = true;
-                                    break;
-                                }
-                            }
+                        if (cancellationToken.isCancelled()) {
+                            break;
+                        }
 
-                            if (!foundBucket) {
-                                //no bucket found
-                                String bucketPath = Util.getParentPath(path);
-                                if (bucketPath != null) {
-                                    albums.add(new Album().setPath(bucketPath));
-                                    albums.get(albums.size() - 1).getAlbumItems().add(0, albumItem);
-                                }
-                            }
+                        //same filter as the items of the bucket (AlbumItem.getInstance()),
+                        //so the count matches the loaded items, with or without the additional file types
+                        String path = cursor.getString(pathColumn);
+                        if (!MediaType.isMedia(path)) {
+                            continue;
                         }
 
+                        long bucket = cursor.getLong(parentColumn);
+                        long size = cursor.getLong(sizeColumn);
+                        if (!aggregate.add(bucket, path, size)) {
+                            //previous bucket is complete
+                            onBucketDone(applicationContext, albums, hiddenFoldersTask, aggregate);
+                            aggregate = new BucketAggregate();
+                            aggregate.add(bucket, path, size);
+
+                            if (hiddenFoldersTask != null && albums.size() > 0) {
+                                hiddenFoldersTask.start();
+                            }
+                        }
+                        if (aggregate.count == 1) {
+                            aggregate.date = cursor.getLong(dateTakenColumn);
+                        }
+                        //DATE_MODIFIED is in seconds
+                        long lastModified = cursor.getLong(dateModifiedColumn) * 1000;
+                        if (lastModified > aggregate.lastModified) {
+                            aggregate.lastModified = lastModified;
+                        }
                     } while (cursor.moveToNext());
 
+                    if (aggregate.coverPath != null) {
+                        onBucketDone(applicationContext, albums, hiddenFoldersTask, aggregate);
+                    }
                 }
                 cursor.close();
 
+                if (hiddenFoldersTask != null) {
+                    //not started yet, e.g. no (or a single) bucket
+                    hiddenFoldersTask.start();
+                    ArrayList<Album> hiddenAlbums = hiddenFoldersTask.await();
+                    //buckets, that were delivered before the hidden folders were known,
+                    //are replaced by the completely listed hidden album
+                    for (int i = albums.size() - 1; i >= 0; i--) {
+                        if (hiddenFoldersTask.isHidden(albums.get(i).getPath())) {
+                            albums.remove(i);
+                        }
+                    }
+                    albums.addAll(hiddenAlbums);
+                }
+
+                flushAlbums();
+
                 //done loading media with content resolver
                 MediaProvider.Callback callback = getCallback();
                 if (callback != null) {
@@ -116,14 +160,197 @@ public class MediaStoreRetriever extends Retriever {
         });
     }
 
+    //aggregates of consecutive rows of the same bucket (rows are grouped by bucket, newest first)
+    static class BucketAggregate {
+        long bucket;
+        //first row of the bucket is the newest item
+        String coverPath;
+        long date;
+        long totalBytes;
+        //newest DATE_MODIFIED of the bucket, in ms
+        long lastModified = -1;
+        int count;
+
+        //returns false, if the row belongs to another bucket: this one is complete
+        boolean add(long bucket, String path, long size) {
+            if (coverPath == null) {
+                this.bucket = bucket;
+                coverPath = path;
+            } else if (bucket != this.bucket) {
+                return false;
+            }
+            count++;
+            totalBytes += size;
+            return true;
+        }
+    }
+
+    private void onBucketDone(Context context, ArrayList<Album> albums, HiddenFoldersTask hiddenFoldersTask,
+                              BucketAggregate aggregate) {
+        String bucketPath = Util.getParentPath(aggregate.coverPath);
+        if (bucketPath == null
+                || (hiddenFoldersTask != null && hiddenFoldersTask.isHidden(bucketPath))) {
+            return;
+        }
+
+        AlbumItem coverItem = AlbumItem.getInstance(aggregate.coverPath);
+        if (coverItem == null) {
+            return;
+        }
+        coverItem.setDate(aggregate.date);
+
+        Album album = new Album().setPath(bucketPath)
+                .setItemSource(new BucketItemSource(context, aggregate.bucket), aggregate.count,
+                        aggregate.date, aggregate.totalBytes, aggregate.lastModified, coverItem);
+        albums.add(album);
+        addAlbum(album);
+    }
+
+    //e.g. for an album, that was parceled before its items were loaded
+    public static Album.ItemSource getItemSource(long bucket) {
+        return new BucketItemSource(null, bucket);
+    }
+
+    //loads the items of a single bucket
+    private static class BucketItemSource implements Album.ItemSource {
+
+        //application context of the last retriever, for sources created from a parcel
+        private static Context appContext;
+
+        private Context context;
+        private long bucket;
+
+        BucketItemSource(Context context, long bucket) {
+            if (context != null) {
+                appContext = context.getApplicationContext();
+            }
+            this.context = appContext;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public ArrayList<AlbumItem> loadItems(Album album) {
+            long startTime = System.currentTimeMillis();
+
+            ArrayList<AlbumItem> albumItems = new ArrayList<>();
+            if (context == null) {
+                //parceled into a new process, before any albums were loaded
+                return albumItems;
+            }
+
+            Cursor cursor = context.getContentResolver().query(
+                    MediaStore.Files.getContentUri("external"),
+                    projection,
+                    selection + " AND " + MediaStore.Files.FileColumns.PARENT + "=?",
+                    new String[]{String.valueOf(bucket)},
+                    sortOrder);
+
+            if (cursor == null) {
+                return albumItems;
+            }
+
+            if (cursor.moveToFirst()) {
+                int pathColumn = cursor.getColumnIndex(MediaStore.Files.FileColumns.DATA);
+                int dateTakenColumn = cursor.getColumnIndex(MediaStore.Images.ImageColumns.DATE_TAKEN);
+                int dateModifiedColumn = cursor.getColumnIndex(MediaStore.Files.FileColumns.DATE_MODIFIED);
+                int sizeColumn = cursor.getColumnIndex(MediaStore.Files.FileColumns.SIZE);
+
+                do {
+                    AlbumItem albumItem = AlbumItem.getInstance(cursor.getString(pathColumn));
+                    if (albumItem != null) {
+                        albumItem.setDate(cursor.getLong(dateTakenColumn));
+                        //DATE_MODIFIED is in seconds
+                        albumItem.setFileInfo(cursor.getLong(dateModifiedColumn) * 1000,
+                                cursor.getLong(sizeColumn));
+                        albumItems.add(albumItem);
+                    }
+                } while (cursor.moveToNext());
+            }
+            cursor.close();
+
+            SortUtil.sort(albumItems, Settings.getInstance(context).sortAlbumBy());
+
+            Log.d("MediaStoreRetriever", "loadItems(" + album.getName() + "): "
+                    + String.valueOf(albumItems.size()) + " items, "
+                    + String.valueOf(System.currentTimeMillis() - startTime) + " ms");
+            return albumItems;
+        }
+
+        @Override
+        public void onItemsLoaded(Album album) {
+            if (context != null) {
+                MediaWatcher.getInstance(context).onItemsLoaded(album);
+            }
+        }
+
+        @Override
+        public long getBucketId() {
+            return bucket;
+        }
+    }
+
     @Override
     public void onDestroy() {
+        super.onDestroy();
+    }
 
+    //queries the dirs containing a .nomedia file & loads them as albums
+    private class HiddenFoldersTask implements Runnable {
+
+        private Context context;
+        private boolean started = false;
+        private final CountDownLatch done = new CountDownLatch(1);
+        //paths of the hidden folders, null until the .nomedia query is done
+        private volatile HashSet<String> paths;
+        private ArrayList<Album> albums = new ArrayList<>();
+
+        HiddenFoldersTask(Context context) {
+            this.context = context;
+        }
+
+        //delivers the pending albums first, so the .nomedia query doesn't delay them;
+        //only starts the task once
+        synchronized void start() {
+            if (!started) {
+                started = true;
+                flushAlbums();
+                AsyncTask.THREAD_POOL_EXECUTOR.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                ArrayList<String> hiddenFolderPaths = queryHiddenFolders(context);
+                //hidden folders are listed completely, skip their buckets
+                paths = new HashSet<>(hiddenFolderPaths);
+                albums = loadHiddenFolders(context, hiddenFolderPaths);
+                addAlbums(albums);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        boolean isHidden(String path) {
+            HashSet<String> paths = this.paths;
+            return paths != null && paths.contains(path);
+        }
+
+        //waits for the hidden albums
+        ArrayList<Album> await() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            return albums;
+        }
     }
 
-    private ArrayList<Album> checkHiddenFolders(final Activity context) {
+    //paths of all dirs containing a .nomedia file
+    private static ArrayList<String> queryHiddenFolders(Context context) {
 
-        ArrayList<Album> hiddenAlbums = new ArrayList<>();
+        ArrayList<String> hiddenFolderPaths = new ArrayList<>();
 
         // Scan all no Media files
         String nonMediaCondition = MediaStore.Files.FileColumns.MEDIA_TYPE
@@ -142,42 +369,125 @@ public class MediaStoreRetriever extends Retriever {
                 new String[]{MediaStore.Files.FileColumns.DATA},
                 selection,
                 params,
-                MediaStore.Images.Media.DATE_TAKEN);
+                null);
 
-        if (cursor == null || cursor.getCount() == 0) {
-            return hiddenAlbums;
+        if (cursor == null) {
+            return hiddenFolderPaths;
         }
 
         if (cursor.moveToFirst()) {
             int pathColumn = cursor.getColumnIndex(MediaStore.Files.FileColumns.DATA);
 
             do {
-                String path = cursor.getString(pathColumn);
+                String path = new File(cursor.getString(pathColumn)).getParent();
+                if (path != null) {
+                    hiddenFolderPaths.add(path);
+                }
+            } while (cursor.moveToNext());
+        }
+        cursor.close();
+
+        return hiddenFolderPaths;
+    }
 
-                path = path.replace(MediaProvider.FILE_TYPE_NO_MEDIA, "");
-                File dir = new File(path);
-                final Album album = new Album().setPath(path);
+    //hidden folders that didn't change since the last load are restored from the index,
+    //only changed (or new) ones are listed, fanned out across the pool
+    private ArrayList<Album> loadHiddenFolders(final Context context, final ArrayList<String> hiddenFolderPaths) {
+        long startTime = System.currentTimeMillis();
 
-                File[] files = dir.listFiles();
+        final MediaIndex index = MediaIndex.getHiddenFoldersInstance(context);
+        //dirs, that no longer contain a .nomedia file, are removed by finishCrawl()
+        index.startCrawl();
 
-                if (files != null) {
-                    for (int i = 0; i < files.length; i++) {
-                        if (MediaType.isMedia(files[i].getPath())) {
-                            AlbumItem albumItem = AlbumItem.getInstance(files[i].getPath());
-                            if (albumItem != null) {
-                                album.getAlbumItems().add(albumItem);
+        final CancellationToken cancellationToken = getCancellationToken();
+        final Album[] albums = new Album[hiddenFolderPaths.size()];
+        final AtomicInteger nextDir = new AtomicInteger(0);
+        final AtomicInteger listedDirs = new AtomicInteger(0);
+        //workers that might still be loading a dir, guarded by itself
+        final int[] activeWorkers = {0};
+
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (activeWorkers) {
+                    activeWorkers[0]++;
+                }
+                try {
+                    int i;
+                    while (!cancellationToken.isCancelled()
+                            && (i = nextDir.getAndIncrement()) < albums.length) {
+                        File dir = new File(hiddenFolderPaths.get(i));
+                        MediaIndex.Dir indexDir = index.getDirIfUnchanged(dir);
+                        if (indexDir == null) {
+                            indexDir = listHiddenFolder(index, dir);
+                            if (indexDir == null) {
+                                continue;
                             }
+                            listedDirs.incrementAndGet();
                         }
+                        albums[i] = index.getAlbum(context, indexDir);
+                    }
+                } finally {
+                    synchronized (activeWorkers) {
+                        activeWorkers[0]--;
+                        activeWorkers.notifyAll();
                     }
                 }
+            }
+        };
 
-                if (album.getAlbumItems().size() > 0) {
-                    hiddenAlbums.add(album);
+        //this thread is one of the workers: it doesn't wait for workers, that didn't start yet
+        //(e.g. because the pool is busy), they won't find a dir left to load
+        int workerCount = Math.min(WorkStealingCrawler.getParallelism(), albums.length);
+        for (int i = 1; i < workerCount; i++) {
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(worker);
+        }
+        worker.run();
+        synchronized (activeWorkers) {
+            while (activeWorkers[0] > 0) {
+                try {
+                    activeWorkers.wait();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                    break;
                 }
-            } while (cursor.moveToNext());
+            }
         }
-        cursor.close();
 
+        ArrayList<Album> hiddenAlbums = new ArrayList<>();
+        for (int i = 0; i < albums.length; i++) {
+            if (albums[i] != null) {
+                hiddenAlbums.add(albums[i]);
+            }
+        }
+
+        if (!cancellationToken.isCancelled()) {
+            index.finishCrawl();
+        }
+        index.save(context);
+
+        Log.d("MediaStoreRetriever", "loadHiddenFolders(): " + String.valueOf(listedDirs.get()) + "/"
+                + String.valueOf(hiddenFolderPaths.size()) + " dirs listed, "
+                + String.valueOf(workerCount) + " workers, "
+                + String.valueOf(System.currentTimeMillis() - startTime) + " ms");
         return hiddenAlbums;
     }
+
+    //lists a dir, that changed since the last load; returns null, if it can't be listed
+    private static MediaIndex.Dir listHiddenFolder(MediaIndex index, File dir) {
+        MediaIndex.Dir indexDir = index.newDir(dir);
+        //found through its .nomedia file
+        indexDir.setNoMedia(true);
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return null;
+        }
+        for (int k = 0; k < files.length; k++) {
+            if (MediaType.isMedia(files[k].getPath()) && !files[k].isDirectory()) {
+                indexDir.addItem(files[k]);
+            }
+        }
+        index.putDir(indexDir);
+        return indexDir;
+    }
 }
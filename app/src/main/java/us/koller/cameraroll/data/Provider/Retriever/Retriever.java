@@ -2,22 +2,41 @@ package us.koller.cameraroll.data.Provider.Retriever;
 
 import android.app.Activity;
 
+import java.util.ArrayList;
+
+import us.koller.cameraroll.data.Album;
 import us.koller.cameraroll.data.Provider.MediaProvider;
 import us.koller.cameraroll.data.Provider.Provider;
 
 public abstract class Retriever {
 
+    //min time between two batches of streamed albums
+    private static final long BATCH_INTERVAL = 100;
+
     private MediaProvider.Callback callback;
 
+    private CancellationToken cancellationToken;
+
+    private ArrayList<Album> pendingAlbums;
+    private long lastBatchTime;
+
     public void loadAlbums(final Activity context, final boolean hiddenFolders, final MediaProvider.Callback callback) {
         setCallback(callback);
+        cancellationToken = new CancellationToken();
         loadAlbums(context, hiddenFolders);
     }
 
     abstract void loadAlbums(final Activity context, final boolean hiddenFolders);
 
+    CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
     public void onDestroy() {
         setCallback(null);
+        if (cancellationToken != null) {
+            cancellationToken.cancel();
+        }
     }
 
     public void setCallback(MediaProvider.Callback callback) {
@@ -27,4 +46,36 @@ public abstract class Retriever {
     public MediaProvider.Callback getCallback() {
         return callback;
     }
+
+    //stream albums to the callback, batched to not flood the ui thread;
+    //albums mustn't be changed after they were added
+    synchronized void addAlbums(ArrayList<Album> albums) {
+        if (pendingAlbums == null) {
+            pendingAlbums = new ArrayList<>();
+        }
+        pendingAlbums.addAll(albums);
+
+        if (System.currentTimeMillis() - lastBatchTime >= BATCH_INTERVAL) {
+            flushAlbums();
+        }
+    }
+
+    void addAlbum(Album album) {
+        ArrayList<Album> albums = new ArrayList<>();
+        albums.add(album);
+        addAlbums(albums);
+    }
+
+    synchronized void flushAlbums() {
+        if (pendingAlbums == null || pendingAlbums.size() == 0) {
+            return;
+        }
+
+        MediaProvider.Callback callback = getCallback();
+        if (callback != null) {
+            callback.onAlbumsAdded(pendingAlbums);
+        }
+        pendingAlbums = null;
+        lastBatchTime = System.currentTimeMillis();
+    }
 }
@@ -0,0 +1,259 @@
+package us.koller.cameraroll.data.Provider.Retriever;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import us.koller.cameraroll.data.Album;
+import us.koller.cameraroll.data.Provider.ItemLoader.AlbumLoader;
+import us.koller.cameraroll.data.Provider.ItemLoader.ItemLoader;
+import us.koller.cameraroll.data.Provider.MediaIndex;
+import us.koller.cameraroll.data.Provider.MediaProvider;
+import us.koller.cameraroll.data.Provider.Provider;
+import us.koller.cameraroll.util.DateTakenRetriever;
+import us.koller.cameraroll.util.MediaType;
+
+//crawls the storage for media with a WorkStealingCrawler,
+//every worker feeds its own ItemLoader, results are streamed per dir
+class StorageCrawler extends WorkStealingCrawler {
+
+    private Activity context;
+    //to save the index, after the crawl was cancelled
+    private Context applicationContext;
+    private StorageRetriever.StorageSearchCallback callback;
+
+    private Class itemLoaderClass;
+    private MediaIndex index;
+    private DateTakenRetriever dateRetriever;
+
+    //don't descend into excluded dirs
+    private boolean pruneExcluded = false;
+
+    private int threadPriority = Process.THREAD_PRIORITY_DEFAULT;
+
+    //state of the workers, by id
+    private WorkerState[] workerStates;
+
+    private CancellationToken cancellationToken;
+
+    //progress
+    private final AtomicInteger dirsVisited = new AtomicInteger(0);
+    private final AtomicInteger itemsFound = new AtomicInteger(0);
+
+    StorageCrawler(Activity context, Class itemLoaderClass, MediaIndex index,
+                   CancellationToken cancellationToken,
+                   StorageRetriever.StorageSearchCallback callback) {
+        this.context = context;
+        this.applicationContext = context.getApplicationContext();
+        this.itemLoaderClass = itemLoaderClass;
+        this.index = index;
+        this.cancellationToken = cancellationToken;
+        this.callback = callback;
+    }
+
+    @Override
+    boolean isCancelled() {
+        return cancellationToken.isCancelled();
+    }
+
+    int getDirsVisited() {
+        return dirsVisited.get();
+    }
+
+    int getItemsFound() {
+        return itemsFound.get();
+    }
+
+    void setDateRetriever(DateTakenRetriever dateRetriever) {
+        this.dateRetriever = dateRetriever;
+    }
+
+    void setPruneExcluded(boolean pruneExcluded) {
+        this.pruneExcluded = pruneExcluded;
+    }
+
+    //e.g. Process.THREAD_PRIORITY_BACKGROUND, to not compete with the ui
+    void setThreadPriority(int threadPriority) {
+        this.threadPriority = threadPriority;
+    }
+
+    void crawl(File[] dirs) {
+        if (dateRetriever != null && itemLoaderClass == AlbumLoader.class) {
+            //once, before the workers start
+            dateRetriever.setCallback(AlbumLoader.createDateCallback(context));
+        }
+
+        workerStates = new WorkerState[getParallelism()];
+        for (int i = 0; i < workerStates.length; i++) {
+            ItemLoader itemLoader = ItemLoader.getInstance(itemLoaderClass);
+            if (itemLoader instanceof AlbumLoader) {
+                ((AlbumLoader) itemLoader).setDateRetriever(dateRetriever);
+            }
+            workerStates[i] = new WorkerState(itemLoader);
+        }
+        crawl(dirs, workerStates.length);
+    }
+
+    @Override
+    void onWorkerStarted(int worker) {
+        Process.setThreadPriority(threadPriority);
+    }
+
+    @Override
+    void searchDir(int worker, File dir) {
+        WorkerState workerState = workerStates[worker];
+        boolean indexed = searchDir(worker, workerState, dir);
+        onDirSearched(workerState, indexed);
+    }
+
+    //stream the result of every searched dir
+    private synchronized void onDirSearched(WorkerState worker, boolean indexed) {
+        dirsVisited.incrementAndGet();
+
+        StorageRetriever.StorageSearchCallback callback = this.callback;
+        if (callback == null || isCancelled()) {
+            return;
+        }
+
+        ItemLoader.Result result;
+        if (indexed) {
+            result = new ItemLoader.Result();
+            result.albums = worker.restoredAlbums;
+            worker.restoredAlbums = new ArrayList<>();
+        } else {
+            result = worker.itemLoader.getResult();
+            if (worker.indexDir != null && result.albums != null && result.albums.size() > 0) {
+                //reuse the album, as long as the dir doesn't change
+                index.setAlbum(worker.indexDir, result.albums.get(0));
+            }
+        }
+        worker.indexDir = null;
+
+        if (result.albums != null && result.albums.size() > 0) {
+            for (int i = 0; i < result.albums.size(); i++) {
+                itemsFound.addAndGet(result.albums.get(i).getItemCount());
+            }
+            callback.onPartialResult(result, indexed);
+        }
+    }
+
+    @Override
+    synchronized void onWorkersDone() {
+        if (isCancelled()) {
+            //keep the dirs crawled so far, the next crawl can skip them
+            Log.d("StorageCrawler", "cancelled: " + String.valueOf(dirsVisited.get()) + " dirs");
+            if (index != null) {
+                index.save(applicationContext);
+            }
+            callback = null;
+            context = null;
+            return;
+        }
+
+        Log.d("StorageCrawler", "done(): " + String.valueOf(getWorkerCount()) + " workers");
+        StorageRetriever.StorageSearchCallback callback = this.callback;
+        if (callback != null) {
+            callback.done();
+        }
+    }
+
+    private static class WorkerState {
+
+        private ItemLoader itemLoader;
+
+        //albums of unchanged dirs, reused from the index
+        private ArrayList<Album> restoredAlbums;
+        //index entry of the dir currently listed
+        private MediaIndex.Dir indexDir;
+
+        WorkerState(ItemLoader itemLoader) {
+            this.itemLoader = itemLoader;
+            restoredAlbums = new ArrayList<>();
+        }
+    }
+
+    //returns true, if the dir was restored from the index
+    private boolean searchDir(int worker, WorkerState workerState, File file) {
+        Activity context = this.context;
+        if (context == null || file.isFile()) {
+            return false;
+        }
+
+        if (pruneExcluded && Provider.isDirExcluded(file.getPath(), Provider.getExcludedPaths())) {
+            //excluded subtree is never listed;
+            //keep its indexed dirs, so excluded albums can be restored, once they are shown
+            if (index != null) {
+                index.keepSubtree(file);
+            }
+            return false;
+        }
+
+        if (index != null) {
+            //dir didn't change since last crawl --> no need to list it
+            MediaIndex.Dir indexedDir = index.getDirIfUnchanged(file);
+            if (indexedDir != null) {
+                //reuse the album of the last crawl, without touching the items
+                Album album = index.getAlbum(context, indexedDir);
+                if (album != null) {
+                    workerState.restoredAlbums.add(album);
+                }
+
+                File[] subDirs = indexedDir.getSubDirs();
+                for (int i = 0; i < subDirs.length; i++) {
+                    push(worker, subDirs[i]);
+                }
+                return true;
+            }
+        }
+
+        MediaIndex.Dir indexDir = index != null ? index.newDir(file) : null;
+        workerState.indexDir = indexDir;
+        ItemLoader itemLoader = workerState.itemLoader;
+
+        itemLoader.onNewDir(context, file);
+
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                File child = files[i];
+                //dirs first, a dir might be named like a media file (e.g. "x.mp4")
+                if (child.isDirectory()) {
+                    itemLoader.onFile(context, child);
+                    if (indexDir != null) {
+                        indexDir.addSubDir(child);
+                    }
+                    push(worker, child);
+                    continue;
+                }
+
+                //classify & stat once, for the loader and the index
+                MediaType.Kind kind = MediaType.getKind(child.getPath());
+                if (kind != MediaType.Kind.NONE) {
+                    long lastModified = child.lastModified();
+                    long size = child.length();
+                    itemLoader.onMediaFile(context, child, kind, lastModified, size);
+                    if (indexDir != null) {
+                        indexDir.addItem(child.getName(), size, lastModified);
+                    }
+                } else {
+                    itemLoader.onFile(context, child);
+                    if (indexDir != null
+                            && child.getName().equals(MediaProvider.FILE_TYPE_NO_MEDIA)) {
+                        indexDir.setNoMedia(true);
+                    }
+                }
+            }
+            itemLoader.onDirDone(context);
+
+            if (indexDir != null) {
+                index.putDir(indexDir);
+            }
+        }
+        return false;
+    }
+}
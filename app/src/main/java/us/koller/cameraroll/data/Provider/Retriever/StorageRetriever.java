@@ -5,14 +5,16 @@ import android.content.Context;
 import android.os.AsyncTask;
 import android.os.Environment;
 import android.os.Handler;
+import android.os.Process;
 import android.util.Log;
-import android.widget.Toast;
 
 import java.io.File;
 import java.io.FileFilter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 
 import us.koller.cameraroll.R;
 import us.koller.cameraroll.data.Album;
@@ -21,9 +23,11 @@ import us.koller.cameraroll.data.Provider.FilesProvider;
 import us.koller.cameraroll.data.Provider.ItemLoader.AlbumLoader;
 import us.koller.cameraroll.data.Provider.ItemLoader.FileLoader;
 import us.koller.cameraroll.data.Provider.ItemLoader.ItemLoader;
+import us.koller.cameraroll.data.Provider.MediaIndex;
 import us.koller.cameraroll.data.Provider.MediaProvider;
 import us.koller.cameraroll.data.Provider.Provider;
 import us.koller.cameraroll.data.StorageRoot;
+import us.koller.cameraroll.util.DateTakenCache;
 import us.koller.cameraroll.util.DateTakenRetriever;
 import us.koller.cameraroll.util.MediaType;
 import us.koller.cameraroll.util.SortUtil;
@@ -33,30 +37,44 @@ import us.koller.cameraroll.util.SortUtil;
 public class StorageRetriever extends Retriever {
 
     interface StorageSearchCallback {
-        void onPartialResult(ItemLoader.Result result);
+        //indexed: result was restored from the MediaIndex, because the dir didn't change
+        void onPartialResult(ItemLoader.Result result, boolean indexed);
 
         void done();
     }
 
-    //option to set thread count;
-    //if set to -1 every dir in home dir get its own thread
-    private static final int THREAD_COUNT = 16;
+    //used for loading dirs
+    private ArrayList<AbstractThread> threads;
 
-    //use AdaptableThreads
-    private static final boolean USE_ADAPTABLE_THREADS = false;
+    //used for loading albums
+    private volatile StorageCrawler crawler;
 
-    private ArrayList<AbstractThread> threads;
+    //instead of a hard timeout: progress is reported every PROGRESS_INTERVAL,
+    //albums found until SOFT_DEADLINE are delivered as a partial result,
+    //while the crawl keeps going in the background
+    private static final long PROGRESS_INTERVAL = 500;
+    private static final long SOFT_DEADLINE = 5000;
 
-    //for timeout
     private Handler handler;
-    private Runnable timeout;
+    private Runnable progress;
+    private volatile boolean crawlDone;
 
     private Class itemLoaderClass;
 
+    //crawl in background priority
+    private boolean lowPriority = false;
+
+    //only used when loading albums
+    private MediaIndex index;
+
     public StorageRetriever() {
 
     }
 
+    void setLowPriority(boolean lowPriority) {
+        this.lowPriority = lowPriority;
+    }
+
     @Override
     void loadAlbums(final Activity context, final boolean hiddenFolders) {
 
@@ -64,51 +82,136 @@ public class StorageRetriever extends Retriever {
 
         final long startTime = System.currentTimeMillis();
 
+        final CancellationToken cancellationToken = getCancellationToken();
+
         final ArrayList<Album> albums = new ArrayList<>();
 
-        //handle timeout after 5 seconds
+        crawlDone = false;
+
+        //all albums known so far (restored from the index or crawled) by path, for the partial result
+        final LinkedHashMap<String, Album> knownAlbums = new LinkedHashMap<>();
+
         handler = new Handler();
-        timeout = new Runnable() {
+        progress = new Runnable() {
+            private boolean partialResultDelivered = false;
+
             @Override
             public void run() {
-                Toast.makeText(context, "timeout", Toast.LENGTH_SHORT).show();
                 MediaProvider.Callback callback = getCallback();
-                if (callback != null) {
-                    callback.timeout();
+                StorageCrawler crawler = StorageRetriever.this.crawler;
+                if (callback == null || cancellationToken.isCancelled() || crawlDone) {
+                    return;
+                }
+
+                if (crawler != null) {
+                    callback.onProgress(crawler.getDirsVisited(), crawler.getItemsFound());
                 }
+
+                if (!partialResultDelivered
+                        && System.currentTimeMillis() - startTime >= SOFT_DEADLINE) {
+                    partialResultDelivered = true;
+                    ArrayList<Album> partialResult;
+                    synchronized (knownAlbums) {
+                        partialResult = new ArrayList<>(knownAlbums.values());
+                    }
+                    removeHiddenAlbums(partialResult, hiddenFolders);
+                    flushAlbums();
+                    callback.onPartialResult(partialResult);
+                    Log.d("StorageRetriever", "onPartialResult(): "
+                            + String.valueOf(partialResult.size()) + " albums");
+                }
+                handler.postDelayed(this, PROGRESS_INTERVAL);
             }
         };
-        handler.postDelayed(timeout, 5000);
+        handler.postDelayed(progress, PROGRESS_INTERVAL);
 
         //load media from storage
         AsyncTask.execute(new Runnable() {
             @Override
             public void run() {
-                searchStorage(context,
+                index = MediaIndex.getInstance(context);
+
+                //paths of albums restored from the index, which were already streamed
+                final HashSet<String> cachedAlbumPaths = new HashSet<>();
+                if (!index.isEmpty()) {
+                    //show albums from the last crawl, while reconciling them with the storage
+                    ArrayList<Album> cachedAlbums = index.getAlbums(context);
+                    synchronized (knownAlbums) {
+                        for (int i = 0; i < cachedAlbums.size(); i++) {
+                            cachedAlbumPaths.add(cachedAlbums.get(i).getPath());
+                            knownAlbums.put(cachedAlbums.get(i).getPath(), cachedAlbums.get(i));
+                        }
+                    }
+                    removeHiddenAlbums(cachedAlbums, hiddenFolders);
+                    addAlbums(cachedAlbums);
+                    flushAlbums();
+                    Log.d("StorageRetriever", "cached albums loaded: "
+                            + String.valueOf(System.currentTimeMillis() - startTime) + " ms");
+                }
+
+                if (cancellationToken.isCancelled()) {
+                    return;
+                }
+
+                index.startCrawl();
+                searchStorage(context, hiddenFolders, cancellationToken,
                         new StorageSearchCallback() {
 
                             @Override
-                            public void onPartialResult(ItemLoader.Result result) {
+                            public void onPartialResult(ItemLoader.Result result, boolean indexed) {
                                 albums.addAll(result.albums);
-                            }
+                                synchronized (knownAlbums) {
+                                    for (int i = 0; i < result.albums.size(); i++) {
+                                        knownAlbums.put(result.albums.get(i).getPath(), result.albums.get(i));
+                                    }
+                                }
 
-                            @Override
-                            public void done() {
-                                if (!hiddenFolders) {
-                                    for (int i = albums.size() - 1; i >= 0; i--) {
-                                        if (albums.get(i).isHidden()) {
-                                            albums.remove(i);
+                                if (indexed) {
+                                    //already streamed from the index
+                                    return;
+                                }
+
+                                ArrayList<Album> newAlbums = new ArrayList<>();
+                                for (int i = 0; i < result.albums.size(); i++) {
+                                    Album album = result.albums.get(i);
+                                    if (!hiddenFolders && album.isHidden()) {
+                                        continue;
+                                    }
+
+                                    if (cachedAlbumPaths.contains(album.getPath())) {
+                                        MediaProvider.Callback callback = getCallback();
+                                        if (callback != null) {
+                                            callback.onAlbumUpdated(album);
                                         }
+                                    } else {
+                                        newAlbums.add(album);
                                     }
                                 }
+                                addAlbums(newAlbums);
+                            }
+
+                            @Override
+                            public void done() {
+                                flushAlbums();
+
+                                index.finishCrawl();
+                                index.save(context);
+
+                                DateTakenCache dateTakenCache = DateTakenCache.getInstance(context);
+                                index.retainDatesTaken(dateTakenCache);
+                                dateTakenCache.save(context);
+
+                                removeHiddenAlbums(albums, hiddenFolders);
+
+                                crawlDone = true;
+                                stopProgress();
 
                                 //done loading media from storage
                                 MediaProvider.Callback callback = getCallback();
                                 if (callback != null) {
                                     callback.onMediaLoaded(albums);
                                 }
-                                cancelTimeout();
-                                Log.d("StorageRetriever", "onMediaLoaded(" + String.valueOf(THREAD_COUNT)
+                                Log.d("StorageRetriever", "onMediaLoaded(" + String.valueOf(StorageCrawler.getParallelism())
                                         + "): " + String.valueOf(System.currentTimeMillis() - startTime) + " ms");
                             }
                         });
@@ -116,6 +219,16 @@ public class StorageRetriever extends Retriever {
         });
     }
 
+    private static void removeHiddenAlbums(ArrayList<Album> albums, boolean hiddenFolders) {
+        if (!hiddenFolders) {
+            for (int i = albums.size() - 1; i >= 0; i--) {
+                if (albums.get(i).isHidden()) {
+                    albums.remove(i);
+                }
+            }
+        }
+    }
+
     public static StorageRoot[] loadRoots(Activity context) {
         ArrayList<StorageRoot> temp = new ArrayList<>();
 
@@ -185,15 +298,24 @@ public class StorageRetriever extends Retriever {
         threads.add(thread);
     }
 
-    private void cancelTimeout() {
-        if (handler != null && timeout != null) {
-            handler.removeCallbacks(timeout);
+    private void stopProgress() {
+        if (handler != null && progress != null) {
+            //might be called from a worker thread
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    handler.removeCallbacks(progress);
+                }
+            });
         }
     }
 
     @Override
     public void onDestroy() {
-        cancelTimeout();
+        //cancels the crawl
+        super.onDestroy();
+        stopProgress();
+        crawler = null;
         //cancel all threads when Activity is being destroyed
         if (threads != null) {
             for (int i = 0; i < threads.size(); i++) {
@@ -261,138 +383,21 @@ public class StorageRetriever extends Retriever {
         return dirs;
     }
 
-    private void searchStorage(final Activity context, final StorageSearchCallback callback) {
+    private void searchStorage(final Activity context, boolean hiddenFolders,
+                               CancellationToken cancellationToken,
+                               final StorageSearchCallback callback) {
         File[] dirs = getDirectoriesToSearch(context);
 
-        threads = new ArrayList<>();
-
-        Thread.Callback threadCallback = new Thread.Callback() {
-            @Override
-            public void done(Thread thread, ItemLoader.Result result) {
-                callback.onPartialResult(result);
-                threads.remove(thread);
-                thread.cancel();
-                if (threads.size() == 0) {
-                    callback.done();
-                    threads = null;
-                }
-            }
-        };
-
-        if (THREAD_COUNT == -1) {
-            for (int i = 0; i < dirs.length; i++) {
-                final File[] files = {dirs[i]};
-                Thread thread = new Thread(context, files,
-                        threadCallback, itemLoaderClass);
-                thread.start();
-                threads.add(thread);
-            }
-        } else if (!USE_ADAPTABLE_THREADS) {
-            final File[][] threadDirs = divideDirs(dirs);
-
-            for (int i = 0; i < THREAD_COUNT; i++) {
-                final File[] files = threadDirs[i];
-                Thread thread = new Thread(context, files,
-                        threadCallback, itemLoaderClass);
-                threads.add(thread);
-                thread.start();
-            }
-        } else {
-            final ArrayList<File> queue = new ArrayList<>(Arrays.asList(dirs));
-
-            AdaptableThread.Callback adaptableThreadCallback = new AdaptableThread.Callback() {
-                @Override
-                public void done(AdaptableThread thread, ItemLoader.Result result,
-                                 ArrayList<File> filesToSearch) {
-                    callback.onPartialResult(result);
-                    queue.addAll(filesToSearch);
-                }
-
-                @Override
-                public File needWork() {
-                    File file = nextDir();
-                    if (file == null) {
-                        //check if done
-                        AsyncTask.execute(new Runnable() {
-                            @Override
-                            public void run() {
-                                checkIfDone();
-                            }
-                        });
-                    }
-                    return file;
-                }
-
-                private synchronized File nextDir() {
-                    if (queue.size() > 0) {
-                        File fileSearch = queue.get(0);
-                        queue.remove(0);
-                        return fileSearch;
-                    }
-                    return null;
-                }
-
-                boolean alreadyDone = false;
-
-                private synchronized void checkIfDone() {
-                    if (alreadyDone) {
-                        return;
-                    }
-
-                    //check if done with searching
-                    boolean done = true;
-                    for (int i = 0; i < threads.size(); i++) {
-                        if (threads.get(i) != null
-                                && ((AdaptableThread) threads.get(i)).searching) {
-                            done = false;
-                            break;
-                        }
-                    }
-
-                    if (done) {
-                        alreadyDone = true;
-                        onDestroy();
-                        callback.done();
-                    }
-                }
-            };
-
-            for (int i = 0; i < THREAD_COUNT; i++) {
-                if (queue.size() > 0) {
-                    AdaptableThread thread
-                            = new AdaptableThread(context, queue.get(0),
-                            adaptableThreadCallback, itemLoaderClass);
-                    //remove file from queue
-                    queue.remove(0);
-                    thread.start();
-                    threads.add(thread);
-                }
-            }
+        crawler = new StorageCrawler(context, itemLoaderClass, index,
+                cancellationToken, callback);
+        //excluded albums are only shown together with hidden folders
+        crawler.setPruneExcluded(!hiddenFolders);
+        //retrieve dates of new or changed items in the background
+        crawler.setDateRetriever(new DateTakenRetriever());
+        if (lowPriority) {
+            crawler.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
         }
-    }
-
-    private File[][] divideDirs(File[] dirs) {
-        int[] threadDirs_sizes = new int[THREAD_COUNT];
-        int rest = dirs.length % THREAD_COUNT;
-        for (int i = 0; i < threadDirs_sizes.length; i++) {
-            threadDirs_sizes[i] = dirs.length / THREAD_COUNT;
-            if (rest > 0) {
-                threadDirs_sizes[i]++;
-                rest--;
-            }
-        }
-
-        Log.d("StorageRetriever", Arrays.toString(threadDirs_sizes));
-
-        File[][] threadDirs = new File[THREAD_COUNT][dirs.length / THREAD_COUNT + 1];
-        int index = 0;
-        for (int i = 0; i < THREAD_COUNT; i++) {
-            File[] threadDir = Arrays.copyOfRange(dirs, index, index + threadDirs_sizes[i]);
-            threadDirs[i] = threadDir;
-            index = index + threadDirs_sizes[i];
-        }
-
-        return threadDirs;
+        crawler.crawl(dirs);
     }
 
     private static abstract class AbstractThread extends java.lang.Thread {
@@ -406,73 +411,6 @@ public class StorageRetriever extends Retriever {
         abstract void cancel();
     }
 
-    private static class Thread extends AbstractThread {
-
-        interface Callback {
-            void done(Thread thread, ItemLoader.Result result);
-        }
-
-        private Activity context;
-        private Callback callback;
-
-        private File[] dirs;
-
-        Thread(Activity context, File[] dirs, Callback callback, Class itemLoaderClass) {
-            super(itemLoaderClass);
-            this.context = context;
-            this.callback = callback;
-            this.dirs = dirs;
-        }
-
-        @Override
-        public void run() {
-            super.run();
-
-            if (dirs != null) {
-                for (int i = 0; i < dirs.length; i++) {
-                    recursivelySearchStorage(context, dirs[i]);
-                }
-            }
-
-            if (callback != null) {
-                callback.done(this, itemLoader.getResult());
-            }
-        }
-
-        private void recursivelySearchStorage(final Activity context,
-                                              final File file) {
-            if (interrupted() || file == null) {
-                return;
-            }
-
-            if (file.isFile()) {
-                return;
-            }
-
-            itemLoader.onNewDir(context, file);
-
-            File[] files = file.listFiles();
-            if (files != null) {
-                for (int i = 0; i < files.length; i++) {
-                    itemLoader.onFile(context, files[i]);
-                }
-                itemLoader.onDirDone(context);
-
-                for (int i = 0; i < files.length; i++) {
-                    if (files[i].isDirectory()) {
-                        recursivelySearchStorage(context, files[i]);
-                    }
-                }
-            }
-        }
-
-        void cancel() {
-            context = null;
-            callback = null;
-            interrupt();
-        }
-    }
-
     //trying to compensate for bigger directories
     private static class AdaptableThread extends AbstractThread {
 
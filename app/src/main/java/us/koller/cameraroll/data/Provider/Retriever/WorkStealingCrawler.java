@@ -0,0 +1,167 @@
+package us.koller.cameraroll.data.Provider.Retriever;
+
+import java.io.File;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//work-stealing crawl of dir trees: every sub-directory becomes its own task;
+//a worker pushes the sub-dirs it finds onto the head of its own deque,
+//idle workers steal from the tail of the other deques (the oldest, usually biggest subtrees)
+//(ForkJoinPool does the same, but requires API 21);
+//no android dependencies, so it can be timed on the jvm (WorkStealingCrawlerBenchmark)
+abstract class WorkStealingCrawler {
+
+    //time an idle worker waits, before checking for work again
+    private static final long IDLE_WAIT = 50;
+
+    //listing dirs is bound by the storage latency (FUSE, sd cards) rather than the cpu,
+    //so use more workers than cores (WorkStealingCrawlerBenchmark, 200 us per listFiles(), 1 core:
+    //1 worker 621 ms, 4 workers 169 ms, 8 workers 95 ms, 16 workers 88 ms)
+    private static final int WORKERS_PER_PROCESSOR = 2;
+    private static final int MIN_WORKERS = 4;
+    private static final int MAX_WORKERS = 16;
+
+    private Worker[] workers;
+
+    //dirs pushed but not yet searched
+    private final AtomicInteger pendingDirs = new AtomicInteger(0);
+    private final AtomicInteger runningWorkers = new AtomicInteger(0);
+
+    private final Object idleLock = new Object();
+    private volatile int idleWorkers = 0;
+
+    static int getParallelism() {
+        int workers = WORKERS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors();
+        return Math.min(MAX_WORKERS, Math.max(MIN_WORKERS, workers));
+    }
+
+    //called on a worker thread: lists the dir, and push()es the sub-dirs to search
+    abstract void searchDir(int worker, File dir);
+
+    //called once, by the last worker: all dirs were searched, or the crawl was cancelled
+    abstract void onWorkersDone();
+
+    abstract boolean isCancelled();
+
+    //called on the worker thread, before it searches its first dir
+    void onWorkerStarted(int worker) {
+
+    }
+
+    int getWorkerCount() {
+        return workers != null ? workers.length : 0;
+    }
+
+    //doesn't block; onWorkersDone() is called right away, if there are no dirs
+    void crawl(File[] dirs, int workerCount) {
+        workers = new Worker[workerCount];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(i);
+        }
+
+        if (dirs.length == 0) {
+            onWorkersDone();
+            return;
+        }
+
+        pendingDirs.set(dirs.length);
+        for (int i = 0; i < dirs.length; i++) {
+            workers[i % workers.length].deque.addLast(dirs[i]);
+        }
+
+        runningWorkers.set(workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].start();
+        }
+    }
+
+    void push(int worker, File dir) {
+        pendingDirs.incrementAndGet();
+        workers[worker].deque.addFirst(dir);
+        if (idleWorkers > 0) {
+            synchronized (idleLock) {
+                idleLock.notify();
+            }
+        }
+    }
+
+    private File nextDir(Worker worker) {
+        File dir = worker.deque.pollFirst();
+        if (dir != null) {
+            return dir;
+        }
+
+        //steal work from other workers
+        for (int i = 1; i < workers.length; i++) {
+            Worker victim = workers[(worker.id + i) % workers.length];
+            dir = victim.deque.pollLast();
+            if (dir != null) {
+                return dir;
+            }
+        }
+        return null;
+    }
+
+    private boolean hasWork() {
+        for (int i = 0; i < workers.length; i++) {
+            if (!workers[i].deque.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void onWorkerDone() {
+        if (runningWorkers.decrementAndGet() == 0) {
+            onWorkersDone();
+        }
+    }
+
+    private class Worker extends java.lang.Thread {
+
+        private int id;
+        private LinkedBlockingDeque<File> deque;
+
+        Worker(int id) {
+            this.id = id;
+            deque = new LinkedBlockingDeque<>();
+        }
+
+        @Override
+        public void run() {
+            super.run();
+            onWorkerStarted(id);
+
+            while (!isCancelled()) {
+                File dir = nextDir(this);
+                if (dir != null) {
+                    searchDir(id, dir);
+                    if (pendingDirs.decrementAndGet() == 0) {
+                        //last dir searched --> wake up idle workers, so they can finish
+                        synchronized (idleLock) {
+                            idleLock.notifyAll();
+                        }
+                    }
+                } else if (pendingDirs.get() == 0) {
+                    break;
+                } else {
+                    //other workers are still searching, wait for them to push new dirs
+                    synchronized (idleLock) {
+                        idleWorkers++;
+                        try {
+                            if (!isCancelled() && pendingDirs.get() > 0 && !hasWork()) {
+                                idleLock.wait(IDLE_WAIT);
+                            }
+                        } catch (InterruptedException e) {
+                            break;
+                        } finally {
+                            idleWorkers--;
+                        }
+                    }
+                }
+            }
+
+            onWorkerDone();
+        }
+    }
+}
@@ -12,6 +12,7 @@ import us.koller.cameraroll.themes.BlackTheme;
 import us.koller.cameraroll.themes.DarkTheme;
 import us.koller.cameraroll.themes.LightTheme;
 import us.koller.cameraroll.themes.Theme;
+import us.koller.cameraroll.util.MediaType;
 import us.koller.cameraroll.util.SortUtil;
 
 public class Settings {
@@ -21,6 +22,7 @@ public class Settings {
 
     private String theme;
     private boolean storageRetriever;
+    private boolean hybridRetriever;
     private int style;
     private int styleColumnCount;
     private int columnCount;
@@ -28,6 +30,7 @@ public class Settings {
     private int sort_album_by;
     private boolean hiddenFolders;
     private boolean use8BitColor;
+    private boolean additionalFileTypes;
     private boolean cameraShortcut;
     private Uri removableStorageTreeUri;
 
@@ -52,6 +55,10 @@ public class Settings {
                 context.getString(R.string.pref_key_media_retriever),
                 false);
 
+        hybridRetriever = sharedPreferences.getBoolean(
+                context.getString(R.string.pref_key_hybrid_retriever),
+                false);
+
         style = sharedPreferences.getInt(
                 context.getString(R.string.pref_key_style),
                 context.getResources().getInteger(R.integer.STYLE_PARALLAX_VALUE));
@@ -78,6 +85,11 @@ public class Settings {
                 context.getString(R.string.pref_key_8_bit_color),
                 false);
 
+        additionalFileTypes = sharedPreferences.getBoolean(
+                context.getString(R.string.pref_key_additional_file_types),
+                false);
+        MediaType.useAdditionalFileTypes(additionalFileTypes);
+
         cameraShortcut = sharedPreferences.getBoolean(
                 context.getString(R.string.pref_key_camera_shortcut),
                 false);
@@ -116,6 +128,14 @@ public class Settings {
         this.storageRetriever = storageRetriever;
     }
 
+    public boolean useHybridRetriever() {
+        return hybridRetriever;
+    }
+
+    public void useHybridRetriever(boolean hybridRetriever) {
+        this.hybridRetriever = hybridRetriever;
+    }
+
     public int getStyle() {
         return style;
     }
@@ -225,6 +245,15 @@ public class Settings {
         this.use8BitColor = use8BitColor;
     }
 
+    public boolean useAdditionalFileTypes() {
+        return additionalFileTypes;
+    }
+
+    public void useAdditionalFileTypes(boolean additionalFileTypes) {
+        this.additionalFileTypes = additionalFileTypes;
+        MediaType.useAdditionalFileTypes(additionalFileTypes);
+    }
+
     public boolean getCameraShortcut() {
         return cameraShortcut;
     }
@@ -56,6 +56,7 @@ import us.koller.cameraroll.data.FileOperations.FileOperation;
 import us.koller.cameraroll.data.FileOperations.Rename;
 import us.koller.cameraroll.data.File_POJO;
 import us.koller.cameraroll.data.Provider.MediaProvider;
+import us.koller.cameraroll.data.Provider.MediaWatcher;
 import us.koller.cameraroll.data.Provider.Provider;
 import us.koller.cameraroll.data.Settings;
 import us.koller.cameraroll.ui.widget.GridMarginDecoration;
@@ -121,6 +122,42 @@ public class AlbumActivity extends ThemeableActivity
     private boolean pick_photos;
     private boolean allowMultiple;
 
+    //apply changes picked up by the MediaWatcher, without reloading
+    private final MediaWatcher.Listener mediaWatcherListener = new MediaWatcher.Listener() {
+        @Override
+        public void onItemInserted(Album album, AlbumItem albumItem, int position) {
+            if (album == AlbumActivity.this.album) {
+                recyclerView.getAdapter().notifyItemInserted(position);
+            }
+        }
+
+        @Override
+        public void onItemRemoved(Album album, AlbumItem albumItem, int position) {
+            if (album == AlbumActivity.this.album) {
+                recyclerView.getAdapter().notifyItemRemoved(position);
+            }
+        }
+
+        @Override
+        public void onItemChanged(Album album, AlbumItem albumItem, int position) {
+            if (album == AlbumActivity.this.album) {
+                recyclerView.getAdapter().notifyItemChanged(position);
+            }
+        }
+
+        @Override
+        public void onItemsLoaded(Album album) {
+            //the adapter loaded them, and refreshes itself
+        }
+
+        @Override
+        public void onItemMoved(Album album, int fromPosition, int toPosition) {
+            if (album == AlbumActivity.this.album) {
+                recyclerView.getAdapter().notifyItemMoved(fromPosition, toPosition);
+            }
+        }
+    };
+
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -158,8 +195,15 @@ public class AlbumActivity extends ThemeableActivity
             return;
         }
 
-        int sort_by = Settings.getInstance(this).sortAlbumBy();
-        SortUtil.sort(album.getAlbumItems(), sort_by);
+        //items of a windowed album are sorted, when they are loaded (by the adapter, in the background)
+        if (album.areItemsLoaded()) {
+            int sort_by = Settings.getInstance(this).sortAlbumBy();
+            SortUtil.sort(album.getAlbumItems(), sort_by);
+        }
+
+        MediaWatcher.getInstance(this).addListener(mediaWatcherListener);
+        //pick up files, that were rewritten since they were indexed
+        MediaWatcher.getInstance(this).verify(album);
 
         final ViewGroup swipeBackView = findViewById(R.id.swipeBackView);
         if (swipeBackView instanceof SwipeBackCoordinatorLayout) {
@@ -397,7 +441,7 @@ public class AlbumActivity extends ThemeableActivity
                         }
                     }
                     final int index = k;
-                    album.getAlbumItems().remove(index);
+                    album.removeAlbumItem(index);
                     recyclerView.getAdapter().notifyDataSetChanged();
                 }
                 break;
@@ -501,11 +545,8 @@ public class AlbumActivity extends ThemeableActivity
                         ((RecyclerViewAdapter) recyclerView.getAdapter())
                                 .cancelSelectorMode(this);
 
-                ArrayList<Uri> uris = new ArrayList<>();
-                for (int i = 0; i < selected_items_paths.length; i++) {
-                    uris.add(StorageUtil.getContentUriFromFilePath(
-                            this, selected_items_paths[i]));
-                }
+                ArrayList<Uri> uris = StorageUtil
+                        .getContentUrisFromFilePaths(this, selected_items_paths);
 
                 intent = new Intent();
                 intent.setAction(Intent.ACTION_SEND_MULTIPLE)
@@ -654,7 +695,7 @@ public class AlbumActivity extends ThemeableActivity
                 if (selected_items[i].equals(albumItem.getPath())) {
                     indices[i] = k;
                     deletedItems[i] = albumItem;
-                    album.getAlbumItems().remove(k);
+                    album.removeAlbumItem(k);
                     recyclerView.getAdapter().notifyItemRemoved(k);
                 }
             }
@@ -672,7 +713,7 @@ public class AlbumActivity extends ThemeableActivity
                         for (int i = 0; i < deletedItems.length; i++) {
                             AlbumItem albumItem = deletedItems[i];
                             int index = indices[i];
-                            album.getAlbumItems().add(index, albumItem);
+                            album.addAlbumItem(index, albumItem);
                             recyclerView.getAdapter().notifyItemInserted(index);
                         }
                     }
@@ -706,7 +747,7 @@ public class AlbumActivity extends ThemeableActivity
                         String path = intent.getStringExtra(FileOperation.FILES);
                         for (int i = 0; i < selected_items.length; i++) {
                             if (selected_items[i].getPath().equals(path)) {
-                                album.getAlbumItems().add(indices[i],
+                                album.addAlbumItem(indices[i],
                                         selected_items[i]);
                                 recyclerView.getAdapter()
                                         .notifyItemInserted(indices[i]);
@@ -724,16 +765,24 @@ public class AlbumActivity extends ThemeableActivity
 
     //needed to send multiple uris in intents
     private ClipData createClipData(AlbumItem[] items) {
+        //resolve all uris with one query
+        String[] paths = new String[items.length];
+        for (int i = 0; i < items.length; i++) {
+            paths[i] = items[i].getPath();
+        }
+        ArrayList<Uri> uris = StorageUtil.getContentUrisFromFilePaths(this, paths);
+
+        //by the extensions, without a ContentResolver call per item
         String[] mimeTypes = new String[items.length];
         for (int i = 0; i < items.length; i++) {
-            mimeTypes[i] = MediaType.getMimeType(this, items[i].getPath());
+            mimeTypes[i] = MediaType.getMimeType(paths[i]);
         }
 
         ClipData clipData =
                 new ClipData("Images", mimeTypes,
-                        new ClipData.Item(items[0].getUri(this)));
-        for (int i = 1; i < items.length; i++) {
-            clipData.addItem(new ClipData.Item(items[i].getUri(this)));
+                        new ClipData.Item(uris.get(0)));
+        for (int i = 1; i < uris.size(); i++) {
+            clipData.addItem(new ClipData.Item(uris.get(i)));
         }
         return clipData;
     }
@@ -998,6 +1047,8 @@ public class AlbumActivity extends ThemeableActivity
     protected void onDestroy() {
         super.onDestroy();
 
+        MediaWatcher.getInstance(this).removeListener(mediaWatcherListener);
+
         Provider.saveExcludedPaths(this);
         Provider.savePinnedPaths(this);
     }
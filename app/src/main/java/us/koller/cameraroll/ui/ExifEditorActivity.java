@@ -33,6 +33,7 @@ import java.util.ArrayList;
 import us.koller.cameraroll.R;
 import us.koller.cameraroll.themes.Theme;
 import us.koller.cameraroll.data.AlbumItem;
+import us.koller.cameraroll.data.Provider.MediaWatcher;
 import us.koller.cameraroll.util.ExifUtil;
 import us.koller.cameraroll.util.MediaType;
 import us.koller.cameraroll.util.Util;
@@ -45,6 +46,7 @@ public class ExifEditorActivity extends ThemeableActivity {
 
     private Menu menu;
 
+    private String path;
     private ExifInterface exifInterface;
 
     private ArrayList<EditedItem> editedItems;
@@ -66,6 +68,7 @@ public class ExifEditorActivity extends ThemeableActivity {
             this.finish();
             return;
         }
+        path = albumItem.getPath();
 
         exifInterface = null;
         try {
@@ -262,6 +265,8 @@ public class ExifEditorActivity extends ThemeableActivity {
                         new Runnable() {
                             @Override
                             public void run() {
+                                //file was rewritten: new glide signature & thumbnail
+                                MediaWatcher.getInstance(ExifEditorActivity.this).invalidate(path);
                                 Toast.makeText(ExifEditorActivity.this, stringRes, Toast.LENGTH_SHORT).show();
                             }
                         });
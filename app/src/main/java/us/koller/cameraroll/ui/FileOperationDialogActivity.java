@@ -357,9 +357,8 @@ public class FileOperationDialogActivity extends ThemeableActivity {
             final boolean selected = position == selected_position;
             ((ViewHolder) holder).setSelected(selected);
 
-            if (album.getAlbumItems().size() > 0) {
-
-                AlbumItem albumItem = album.getAlbumItems().get(0);
+            AlbumItem albumItem = album.getCoverItem();
+            if (albumItem != null) {
 
                 RequestOptions options = new RequestOptions()
                         .error(R.drawable.error_placeholder_tinted)
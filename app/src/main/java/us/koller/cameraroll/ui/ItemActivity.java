@@ -197,7 +197,8 @@ public class ItemActivity extends ThemeableActivity {
         } else {
             //album = getIntent().getExtras().getParcelable(AlbumActivity.ALBUM);
             int position = getIntent().getIntExtra(ITEM_POSITION, 0);
-            if (album != null) {
+            //items of a windowed album might not be loaded (yet)
+            if (album != null && position < album.getAlbumItems().size()) {
                 albumItem = album.getAlbumItems().get(position);
                 albumItem.isSharedElement = true;
             }
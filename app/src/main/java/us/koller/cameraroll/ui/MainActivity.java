@@ -35,6 +35,9 @@ import android.view.WindowInsets;
 import android.widget.Toast;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -44,8 +47,10 @@ import us.koller.cameraroll.adapter.SelectorModeManager;
 import us.koller.cameraroll.adapter.main.RecyclerViewAdapter;
 import us.koller.cameraroll.adapter.main.ViewHolder.NestedRecyclerViewAlbumHolder;
 import us.koller.cameraroll.data.Album;
+import us.koller.cameraroll.data.AlbumItem;
 import us.koller.cameraroll.data.FileOperations.FileOperation;
 import us.koller.cameraroll.data.Provider.MediaProvider;
+import us.koller.cameraroll.data.Provider.MediaWatcher;
 import us.koller.cameraroll.data.Settings;
 import us.koller.cameraroll.ui.widget.GridMarginDecoration;
 import us.koller.cameraroll.ui.widget.ParallaxImageView;
@@ -58,6 +63,8 @@ public class MainActivity extends ThemeableActivity implements SelectorModeManag
     public static final String REFRESH_MEDIA = "REFRESH_MEDIA";
     public static final String PICK_PHOTOS = "PICK_PHOTOS";
     public static final String RESORT = "RESORT";
+    //paths of the items, whose date changed (optional extra of RESORT)
+    public static final String CHANGED_PATHS = "CHANGED_PATHS";
 
     public static final int PICK_PHOTOS_REQUEST_CODE = 6;
     public static final int REFRESH_PHOTOS_REQUEST_CODE = 7;
@@ -75,7 +82,9 @@ public class MainActivity extends ThemeableActivity implements SelectorModeManag
                 return;
             }
 
-            if (sharedElementViewHolder.sharedElementReturnPosition != -1) {
+            if (sharedElementViewHolder.sharedElementReturnPosition != -1
+                    && sharedElementViewHolder.sharedElementReturnPosition
+                    < sharedElementViewHolder.album.getAlbumItems().size()) {
                 String newTransitionName = sharedElementViewHolder.album.getAlbumItems()
                         .get(sharedElementViewHolder.sharedElementReturnPosition).getPath();
                 View layout = sharedElementViewHolder.nestedRecyclerView.findViewWithTag(newTransitionName);
@@ -115,6 +124,34 @@ public class MainActivity extends ThemeableActivity implements SelectorModeManag
 
     private boolean hiddenFolders;
 
+    //apply changes picked up by the MediaWatcher, without reloading
+    private final MediaWatcher.Listener mediaWatcherListener = new MediaWatcher.Listener() {
+        @Override
+        public void onItemInserted(Album album, AlbumItem albumItem, int position) {
+            onAlbumChanged(album);
+        }
+
+        @Override
+        public void onItemRemoved(Album album, AlbumItem albumItem, int position) {
+            onAlbumChanged(album);
+        }
+
+        @Override
+        public void onItemChanged(Album album, AlbumItem albumItem, int position) {
+            onAlbumChanged(album);
+        }
+
+        @Override
+        public void onItemsLoaded(Album album) {
+            onAlbumChanged(album);
+        }
+
+        @Override
+        public void onItemMoved(Album album, int fromPosition, int toPosition) {
+            //resortAlbums() updates the album, once all its items are in place
+        }
+    };
+
     private boolean pick_photos;
     @SuppressWarnings("FieldCanBeLocal")
     private boolean allowMultiple;
@@ -196,6 +233,8 @@ public class MainActivity extends ThemeableActivity implements SelectorModeManag
 
         recyclerViewAdapter.getSelectorManager().addCallback(this);
 
+        MediaWatcher.getInstance(this).addListener(mediaWatcherListener);
+
         recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
             /*private float scrollY = 0.0f;*/
 
@@ -450,6 +489,12 @@ public class MainActivity extends ThemeableActivity implements SelectorModeManag
             mediaProvider = null;
         }
 
+        //streamed albums are merged into a copy, leaving MediaProvider.getAlbums() untouched
+        albums = new ArrayList<>(albums);
+        if (recyclerViewAdapter != null) {
+            recyclerViewAdapter.setAlbums(albums);
+        }
+
         snackbar = Snackbar.make(findViewById(R.id.root_view),
                 R.string.loading, Snackbar.LENGTH_INDEFINITE);
         Util.showSnackbar(snackbar);
@@ -463,8 +508,7 @@ public class MainActivity extends ThemeableActivity implements SelectorModeManag
                         @Override
                         public void run() {
                             MainActivity.this.albums = albums;
-                            recyclerViewAdapter.setAlbums(albums);
-                            recyclerViewAdapter.notifyDataSetChanged();
+                            recyclerViewAdapter.updateAlbums(albums);
 
                             snackbar.dismiss();
 
@@ -477,6 +521,47 @@ public class MainActivity extends ThemeableActivity implements SelectorModeManag
                 }
             }
 
+            @Override
+            public void onAlbumsAdded(final ArrayList<Album> albums) {
+                MainActivity.this.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Comparator<Album> comparator = SortUtil.getAlbumsComparator(
+                                Settings.getInstance(MainActivity.this).sortAlbumsBy());
+                        for (int i = 0; i < albums.size(); i++) {
+                            recyclerViewAdapter.addAlbum(albums.get(i), comparator);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onAlbumUpdated(final Album album) {
+                MainActivity.this.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Comparator<Album> comparator = SortUtil.getAlbumsComparator(
+                                Settings.getInstance(MainActivity.this).sortAlbumsBy());
+                        recyclerViewAdapter.addAlbum(album, comparator);
+                    }
+                });
+            }
+
+            @Override
+            public void onProgress(int dirsVisited, int itemsFound) {
+                if (snackbar != null && snackbar.isShown()) {
+                    snackbar.setText(getString(R.string.loading) + " " + String.valueOf(itemsFound)
+                            + getString(R.string.items));
+                }
+            }
+
+            @Override
+            public void onPartialResult(ArrayList<Album> albums) {
+                //loading continues in the background, new albums keep getting streamed
+                MainActivity.this.albums = new ArrayList<>(albums);
+                recyclerViewAdapter.updateAlbums(MainActivity.this.albums);
+            }
+
             @Override
             public void timeout() {
                 //handle timeout
@@ -583,17 +668,64 @@ public class MainActivity extends ThemeableActivity implements SelectorModeManag
         return super.onOptionsItemSelected(item);
     }
 
+    private void onAlbumChanged(Album album) {
+        int index = albums.indexOf(album);
+        if (index == -1) {
+            return;
+        }
+
+        if (album.getItemCount() == 0) {
+            albums.remove(index);
+            recyclerViewAdapter.notifyItemRemoved(index);
+        } else {
+            recyclerViewAdapter.notifyItemChanged(index);
+        }
+    }
+
     private void resortAlbums() {
+        if (MediaProvider.getAlbums() == null) {
+            //still loading, albums get sorted once they are loaded
+            return;
+        }
+
         final Snackbar snackbar = Snackbar.make(findViewById(R.id.root_view),
                 "Sorting...", Snackbar.LENGTH_INDEFINITE);
         Util.showSnackbar(snackbar);
+        final ArrayList<Album> albums = new ArrayList<>(MediaProvider.getAlbums());
+        final int sortAlbumBy = Settings.getInstance(this).sortAlbumBy();
         AsyncTask.execute(new Runnable() {
             @Override
             public void run() {
-                SortUtil.sortAlbums(MainActivity.this, MediaProvider.getAlbums());
+                //sort copies, the shown lists are only changed on the ui thread
+                final ArrayList<ArrayList<AlbumItem>> sortedItems = new ArrayList<>();
+                for (int i = 0; i < albums.size(); i++) {
+                    ArrayList<AlbumItem> albumItems = null;
+                    //items of windowed albums are sorted when they are loaded
+                    if (albums.get(i).areItemsLoaded()) {
+                        albumItems = albums.get(i).copyAlbumItems();
+                        SortUtil.sort(albumItems, sortAlbumBy);
+                    }
+                    sortedItems.add(albumItems);
+                }
+
                 MainActivity.this.runOnUiThread(new Runnable() {
                     @Override
                     public void run() {
+                        for (int i = 0; i < albums.size(); i++) {
+                            Album album = albums.get(i);
+                            ArrayList<AlbumItem> albumItems = sortedItems.get(i);
+                            if (albumItems != null && !album.reorderAlbumItems(albumItems)) {
+                                //items changed while sorting
+                                SortUtil.sort(album.getAlbumItems(), sortAlbumBy);
+                            }
+                            //dateTaken of items might have been retrieved since the last sort
+                            album.invalidateDate();
+                        }
+                        ArrayList<Album> shownAlbums = MediaProvider.getAlbums();
+                        if (shownAlbums != null) {
+                            SortUtil.sortAlbums(shownAlbums,
+                                    Settings.getInstance(MainActivity.this).sortAlbumsBy());
+                        }
                         snackbar.dismiss();
                         recyclerView.getAdapter().notifyDataSetChanged();
                     }
@@ -602,6 +734,57 @@ public class MainActivity extends ThemeableActivity implements SelectorModeManag
         });
     }
 
+    //only reposition the items and albums, whose date changed
+    private void resortAlbums(String[] changedPaths) {
+        if (albums == null || recyclerViewAdapter == null) {
+            return;
+        }
+
+        HashMap<String, HashSet<String>> changedPathsByAlbum = new HashMap<>();
+        for (int i = 0; i < changedPaths.length; i++) {
+            String albumPath = Util.getParentPath(changedPaths[i]);
+            HashSet<String> paths = changedPathsByAlbum.get(albumPath);
+            if (paths == null) {
+                paths = new HashSet<>();
+                changedPathsByAlbum.put(albumPath, paths);
+            }
+            paths.add(changedPaths[i]);
+        }
+
+        MediaWatcher watcher = MediaWatcher.getInstance(this);
+        ArrayList<Album> changedAlbums = new ArrayList<>();
+        for (int i = 0; i < albums.size(); i++) {
+            Album album = albums.get(i);
+            HashSet<String> paths = changedPathsByAlbum.get(album.getPath());
+            //items of windowed albums are sorted when they are loaded
+            if (paths == null || !album.areItemsLoaded()) {
+                continue;
+            }
+
+            ArrayList<AlbumItem> changedItems = new ArrayList<>();
+            ArrayList<AlbumItem> albumItems = album.getAlbumItems();
+            for (int k = 0; k < albumItems.size(); k++) {
+                if (paths.contains(albumItems.get(k).getPath())) {
+                    changedItems.add(albumItems.get(k));
+                }
+            }
+            //also moves the items in an open AlbumActivity
+            watcher.resort(album, changedItems);
+            album.invalidateDate();
+            changedAlbums.add(album);
+        }
+
+        ArrayList<int[]> moves = SortUtil.resort(albums, changedAlbums,
+                SortUtil.getAlbumsComparator(Settings.getInstance(this).sortAlbumsBy()));
+        for (int i = 0; i < moves.size(); i++) {
+            recyclerViewAdapter.notifyItemMoved(moves.get(i)[0], moves.get(i)[1]);
+        }
+        //cover might have changed
+        for (int i = 0; i < changedAlbums.size(); i++) {
+            recyclerViewAdapter.notifyItemChanged(albums.indexOf(changedAlbums.get(i)));
+        }
+    }
+
     public void fabClicked(View v) {
         if (v instanceof FloatingActionButton) {
             FloatingActionButton fab = (FloatingActionButton) v;
@@ -724,6 +907,12 @@ public class MainActivity extends ThemeableActivity implements SelectorModeManag
         if (mediaProvider != null) {
             mediaProvider.onDestroy();
         }
+
+        MediaWatcher watcher = MediaWatcher.getInstance(this);
+        watcher.removeListener(mediaWatcherListener);
+        if (isFinishing()) {
+            watcher.stopWatching();
+        }
     }
 
     @Override
@@ -776,6 +965,14 @@ public class MainActivity extends ThemeableActivity implements SelectorModeManag
                     case FileOperation.FAILED:
                         refreshPhotos();
                         break;
+                    case RESORT:
+                        String[] changedPaths = intent.getStringArrayExtra(CHANGED_PATHS);
+                        if (changedPaths != null) {
+                            resortAlbums(changedPaths);
+                        } else {
+                            resortAlbums();
+                        }
+                        break;
                 }
             }
         };
@@ -783,6 +980,8 @@ public class MainActivity extends ThemeableActivity implements SelectorModeManag
 
     @Override
     public IntentFilter getBroadcastIntentFilter() {
-        return FileOperation.Util.getIntentFilter(super.getBroadcastIntentFilter());
+        IntentFilter filter = FileOperation.Util.getIntentFilter(super.getBroadcastIntentFilter());
+        filter.addAction(RESORT);
+        return filter;
     }
 }
@@ -221,7 +221,9 @@ public class SettingsActivity extends ThemeableActivity {
             initStylePref(settings.getStyle());
             initColumnCountPref(settings.getColumnCount(getContext()));
             initMediaRetrieverPref(settings.useStorageRetriever());
+            initHybridRetrieverPref(settings.useHybridRetriever());
             init8BitColorPref(settings.use8BitColor());
+            initAdditionalFileTypesPref(settings.useAdditionalFileTypes());
             initCameraShortcutPref(settings.getCameraShortcut());
 
             if (savedInstanceState != null
@@ -274,6 +276,14 @@ public class SettingsActivity extends ThemeableActivity {
             mediaRetrieverPref.setOnPreferenceChangeListener(this);
         }
 
+        private void initHybridRetrieverPref(boolean hybridRetriever) {
+            TwoStatePreference hybridRetrieverPref =
+                    (TwoStatePreference) findPreference(getString(R.string.pref_key_hybrid_retriever));
+
+            hybridRetrieverPref.setChecked(hybridRetriever);
+            hybridRetrieverPref.setOnPreferenceChangeListener(this);
+        }
+
         private void init8BitColorPref(boolean use8BitColor) {
             TwoStatePreference use8BitColorPref =
                     (TwoStatePreference) findPreference(getString(R.string.pref_key_8_bit_color));
@@ -282,6 +292,14 @@ public class SettingsActivity extends ThemeableActivity {
             use8BitColorPref.setOnPreferenceChangeListener(this);
         }
 
+        private void initAdditionalFileTypesPref(boolean additionalFileTypes) {
+            TwoStatePreference additionalFileTypesPref =
+                    (TwoStatePreference) findPreference(getString(R.string.pref_key_additional_file_types));
+
+            additionalFileTypesPref.setChecked(additionalFileTypes);
+            additionalFileTypesPref.setOnPreferenceChangeListener(this);
+        }
+
         private void initCameraShortcutPref(boolean cameraShortcut) {
             TwoStatePreference cameraShortcutPref =
                     (TwoStatePreference) findPreference(getString(R.string.pref_key_camera_shortcut));
@@ -373,8 +391,12 @@ public class SettingsActivity extends ThemeableActivity {
                 preference.setSummary(String.valueOf(o));
             } else if (preference.getKey().equals(getString(R.string.pref_key_media_retriever))) {
                 settings.useStorageRetriever((boolean) o);
+            } else if (preference.getKey().equals(getString(R.string.pref_key_hybrid_retriever))) {
+                settings.useHybridRetriever((boolean) o);
             } else if (preference.getKey().equals(getString(R.string.pref_key_8_bit_color))) {
                 settings.use8BitColor((boolean) o);
+            } else if (preference.getKey().equals(getString(R.string.pref_key_additional_file_types))) {
+                settings.useAdditionalFileTypes((boolean) o);
             } else if (preference.getKey().equals(getString(R.string.pref_key_camera_shortcut))) {
                 settings.setCameraShortcut((boolean) o);
             }
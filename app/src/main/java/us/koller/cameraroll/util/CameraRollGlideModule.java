@@ -0,0 +1,25 @@
+package us.koller.cameraroll.util;
+
+import android.content.Context;
+
+import com.bumptech.glide.Registry;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.module.AppGlideModule;
+
+import java.nio.ByteBuffer;
+
+@GlideModule
+public class CameraRollGlideModule extends AppGlideModule {
+
+    @Override
+    public void registerComponents(Context context, Registry registry) {
+        //grid thumbnails, decoded by Glide's ByteBuffer decoders
+        registry.prepend(ThumbnailCache.Thumbnail.class, ByteBuffer.class,
+                new ThumbnailLoader.Factory(context));
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+}
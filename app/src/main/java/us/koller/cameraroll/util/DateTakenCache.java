@@ -0,0 +1,208 @@
+package us.koller.cameraroll.util;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import us.koller.cameraroll.data.AlbumItem;
+
+//persistent cache of retrieved dateTaken timestamps, saved in app-private storage;
+//an entry is only valid as long as lastModified and length of the file didn't change;
+//entries of files, that weren't found by the last full crawl, are dropped on save
+public class DateTakenCache {
+
+    private static final String CACHE_FILE_NAME = "date_taken_cache";
+    private static final int VERSION = 1;
+
+    private static class Entry {
+        private long lastModified;
+        private long size;
+        private long dateTaken;
+        //last retain() of the entry
+        private int generation;
+
+        Entry(long lastModified, long size, long dateTaken, int generation) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.dateTaken = dateTaken;
+            this.generation = generation;
+        }
+    }
+
+    private static DateTakenCache instance;
+
+    private ConcurrentHashMap<String, Entry> entries;
+
+    private volatile boolean changed;
+
+    //entries older than pruneGeneration are dropped by the next save(); -1: nothing to drop
+    private volatile int generation;
+    private volatile int pruneGeneration;
+    private int retained;
+
+    public static synchronized DateTakenCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new DateTakenCache();
+            instance.load(context);
+        }
+        return instance;
+    }
+
+    private DateTakenCache() {
+        entries = new ConcurrentHashMap<>();
+        changed = false;
+        generation = 0;
+        pruneGeneration = -1;
+    }
+
+    //sets the cached date of the albumItem;
+    //returns false, if the file is new or changed since it was cached
+    public boolean apply(AlbumItem albumItem) {
+        File file = new File(albumItem.getPath());
+        return apply(albumItem, file.lastModified(), file.length());
+    }
+
+    public boolean apply(AlbumItem albumItem, long lastModified, long size) {
+        Entry entry = entries.get(albumItem.getPath());
+        if (entry == null || entry.lastModified != lastModified || entry.size != size) {
+            return false;
+        }
+        //-1: no dateTaken found, fall back to lastModified
+        if (entry.dateTaken != -1) {
+            albumItem.setDate(entry.dateTaken);
+        }
+        return true;
+    }
+
+    public void put(String path, long dateTaken) {
+        File file = new File(path);
+        long lastModified = file.lastModified();
+        if (lastModified == 0) {
+            //file doesn't exist
+            return;
+        }
+        entries.put(path, new Entry(lastModified, file.length(), dateTaken, generation));
+        changed = true;
+    }
+
+    public void remove(String path) {
+        if (entries.remove(path) != null) {
+            changed = true;
+        }
+    }
+
+    //file was moved or renamed: lastModified and length are kept, and so is the date
+    public void move(String path, String newPath) {
+        Entry entry = entries.remove(path);
+        if (entry != null) {
+            entries.put(newPath, entry);
+            changed = true;
+        }
+    }
+
+    //after a full crawl: retain() the paths of all files found,
+    //the other entries (files deleted or moved by other apps) are dropped by the next save()
+    public synchronized void startRetain() {
+        generation++;
+        retained = 0;
+    }
+
+    public synchronized void retain(String path) {
+        Entry entry = entries.get(path);
+        if (entry != null) {
+            entry.generation = generation;
+            retained++;
+        }
+    }
+
+    public synchronized void finishRetain() {
+        if (retained < entries.size()) {
+            pruneGeneration = generation;
+            changed = true;
+        }
+    }
+
+    private void load(Context context) {
+        long startTime = System.currentTimeMillis();
+        try {
+            DataInputStream is = new DataInputStream(new BufferedInputStream(
+                    context.openFileInput(CACHE_FILE_NAME)));
+            try {
+                if (is.readInt() != VERSION) {
+                    return;
+                }
+                int count = is.readInt();
+                for (int i = 0; i < count; i++) {
+                    entries.put(is.readUTF(),
+                            new Entry(is.readLong(), is.readLong(), is.readLong(), generation));
+                }
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            // no cache saved yet, or cache corrupt
+            entries.clear();
+        }
+        Log.d("DateTakenCache", "load(): " + String.valueOf(entries.size()) + " entries, "
+                + String.valueOf(System.currentTimeMillis() - startTime) + " ms");
+    }
+
+    //only writes the cache, if it changed since it was last saved
+    public synchronized void save(Context context) {
+        if (!changed) {
+            return;
+        }
+        changed = false;
+
+        if (pruneGeneration != -1) {
+            int pruned = 0;
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().generation < pruneGeneration) {
+                    iterator.remove();
+                    pruned++;
+                }
+            }
+            pruneGeneration = -1;
+            Log.d("DateTakenCache", "save(): " + String.valueOf(pruned) + " entries pruned");
+        }
+
+        String tempFileName = CACHE_FILE_NAME + ".tmp";
+        try {
+            DataOutputStream os = new DataOutputStream(new BufferedOutputStream(
+                    context.openFileOutput(tempFileName, Context.MODE_PRIVATE)));
+            try {
+                //entries might be added while saving
+                ArrayList<Map.Entry<String, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+                os.writeInt(VERSION);
+                os.writeInt(snapshot.size());
+                for (int i = 0; i < snapshot.size(); i++) {
+                    Entry entry = snapshot.get(i).getValue();
+                    os.writeUTF(snapshot.get(i).getKey());
+                    os.writeLong(entry.lastModified);
+                    os.writeLong(entry.size);
+                    os.writeLong(entry.dateTaken);
+                }
+            } finally {
+                os.close();
+            }
+            //replace old cache
+            //noinspection ResultOfMethodCallIgnored
+            context.getFileStreamPath(tempFileName)
+                    .renameTo(context.getFileStreamPath(CACHE_FILE_NAME));
+        } catch (IOException e) {
+            e.printStackTrace();
+            changed = true;
+        }
+    }
+}
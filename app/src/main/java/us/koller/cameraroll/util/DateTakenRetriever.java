@@ -4,35 +4,109 @@ import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.AsyncTask;
-import android.os.Build;
 import android.provider.MediaStore;
 import android.support.media.ExifInterface;
 import android.util.Log;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import us.koller.cameraroll.data.AlbumItem;
 
 public class DateTakenRetriever {
 
+    //max number of concurrent workers
+    private static final int MAX_WORKER_COUNT = 4;
+    //number of retrieved dates, after which onProgress() is called
+    private static final int BATCH_SIZE = 100;
+
+    private static final String EXIF_DATE_FORMAT = "yyyy:MM:dd HH:mm:ss";
+
+    //SimpleDateFormat isn't thread-safe --> one per thread
+    private static final ThreadLocal<SimpleDateFormat> dateFormat
+            = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            //exif dates aren't localized
+            return new SimpleDateFormat(EXIF_DATE_FORMAT, Locale.US);
+        }
+    };
+
     public interface Callback {
+        //called once per batch of retrieved dates (from a background thread);
+        //dates: retrieved since the last batch, not yet set on the items
+        void onProgress(int retrieved, int remaining, Batch dates);
+
         void done();
     }
 
-    private ArrayList<AlbumItem> queue;
+    //dates are only set by apply(), on the thread that sorts the items (the ui thread);
+    //setting them from the workers would reorder items, while they are being sorted
+    public static class Batch {
+        private ArrayList<AlbumItem> albumItems;
+        private ArrayList<Long> dates;
+
+        Batch() {
+            albumItems = new ArrayList<>();
+            dates = new ArrayList<>();
+        }
 
-    private boolean running;
+        private void add(AlbumItem albumItem, long dateTaken) {
+            albumItems.add(albumItem);
+            dates.add(dateTaken);
+        }
+
+        public int size() {
+            return albumItems.size();
+        }
+
+        //sets the retrieved dates; returns the paths of the items, whose date changed
+        public String[] apply() {
+            ArrayList<String> changedPaths = new ArrayList<>();
+            for (int i = 0; i < albumItems.size(); i++) {
+                AlbumItem albumItem = albumItems.get(i);
+                long dateTaken = dates.get(i);
+                if (albumItem.getDateTaken() != dateTaken) {
+                    albumItem.setDate(dateTaken);
+                    changedPaths.add(albumItem.getPath());
+                }
+            }
+            return changedPaths.toArray(new String[changedPaths.size()]);
+        }
+    }
 
-    private Callback callback;
+    private static class RetrievedDate {
+        private AlbumItem albumItem;
+        private long dateTaken;
+
+        RetrievedDate(AlbumItem albumItem, long dateTaken) {
+            this.albumItem = albumItem;
+            this.dateTaken = dateTaken;
+        }
+    }
+
+    private final LinkedBlockingQueue<AlbumItem> queue;
+    //retrieved dates, that weren't handed out in a batch yet
+    private final ConcurrentLinkedQueue<RetrievedDate> retrievedDates;
+
+    private final AtomicInteger runningWorkers;
+    private final AtomicInteger retrieved;
+    private int lastBatch;
+
+    private volatile Callback callback;
 
     public DateTakenRetriever() {
-        running = false;
+        queue = new LinkedBlockingQueue<>();
+        retrievedDates = new ConcurrentLinkedQueue<>();
+        runningWorkers = new AtomicInteger(0);
+        retrieved = new AtomicInteger(0);
     }
 
     public void setCallback(Callback callback) {
@@ -44,76 +118,136 @@ public class DateTakenRetriever {
     }
 
     public void retrieveDate(Context context, AlbumItem albumItem) {
-        if (queue == null) {
-            queue = new ArrayList<>();
-        }
         queue.add(albumItem);
-        if (!running) {
-            startRetrieving(context);
-        }
+        startWorkers(context.getApplicationContext());
     }
 
-    private void startRetrieving(final Context context) {
-        AsyncTask.execute(new Runnable() {
-            @Override
-            public void run() {
-                running = true;
-                while (queue.size() > 0) {
-                    AlbumItem albumItem = queue.get(0);
-                    Log.d("DateTakenRetriever", "tryToRetrieveDateTaken: " + albumItem.getName());
-                    tryToRetrieveDateTaken(context, albumItem);
-                    queue.remove(albumItem);
+    private synchronized void startWorkers(final Context context) {
+        int workerCount = Math.min(MAX_WORKER_COUNT, Runtime.getRuntime().availableProcessors());
+        //don't start more workers than there are items to process
+        while (runningWorkers.get() < Math.min(workerCount, queue.size())) {
+            runningWorkers.incrementAndGet();
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    AlbumItem albumItem;
+                    while ((albumItem = queue.poll()) != null) {
+                        //items are only queued, if their date isn't cached
+                        long dateTaken = retrieveDateTaken(context, albumItem.getPath());
+                        if (dateTaken != -1) {
+                            retrievedDates.add(new RetrievedDate(albumItem, dateTaken));
+                        }
+                        if (retrieved.incrementAndGet() % BATCH_SIZE == 0) {
+                            onBatchDone();
+                        }
+                    }
+                    onWorkerDone(context);
                 }
-                running = false;
+            });
+        }
+    }
 
-                if (getCallback() != null) {
-                    getCallback().done();
-                }
+    private void onBatchDone() {
+        int retrieved;
+        synchronized (this) {
+            retrieved = this.retrieved.get();
+            if (retrieved == lastBatch) {
+                return;
+            }
+            lastBatch = retrieved;
+        }
+
+        Batch batch = new Batch();
+        RetrievedDate retrievedDate;
+        while ((retrievedDate = retrievedDates.poll()) != null) {
+            batch.add(retrievedDate.albumItem, retrievedDate.dateTaken);
+        }
+
+        Callback callback = getCallback();
+        if (callback != null) {
+            callback.onProgress(retrieved, queue.size(), batch);
+        }
+    }
+
+    private void onWorkerDone(Context context) {
+        boolean done;
+        synchronized (this) {
+            done = runningWorkers.decrementAndGet() == 0;
+            if (!queue.isEmpty()) {
+                //items were added, after the last worker checked the queue
+                startWorkers(context);
+                done = false;
             }
-        });
+        }
+
+        if (done) {
+            Log.d("DateTakenRetriever", "done(): " + String.valueOf(retrieved.get()) + " items");
+            DateTakenCache.getInstance(context).save(context);
+            //last batch
+            onBatchDone();
+            Callback callback = getCallback();
+            if (callback != null) {
+                callback.done();
+            }
+        }
     }
 
     //synchronous
     public static void tryToRetrieveDateTaken(final Context context, final AlbumItem albumItem) {
-        if (MediaType.doesSupportExif(albumItem.getPath())) {
-            ExifInterface exif = null;
-            try {
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-                    Uri uri = albumItem.getUri(context);
-                    InputStream is = context.getContentResolver().openInputStream(uri);
-                    if (is != null) {
-                        exif = new ExifInterface(is);
-                    }
+        DateTakenCache cache = DateTakenCache.getInstance(context);
+        if (cache.apply(albumItem)) {
+            //file didn't change since its date was retrieved
+            return;
+        }
 
-                } else {
-                    exif = new ExifInterface(albumItem.getPath());
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        long dateTaken = retrieveDateTaken(context, albumItem.getPath());
+        if (dateTaken != -1) {
+            albumItem.setDate(dateTaken);
+        }
+    }
 
-            if (exif != null && android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.N) {
-                String dateTakenString = String.valueOf(ExifUtil.getCastValue(exif, ExifInterface.TAG_DATETIME));
-                if (dateTakenString != null && !dateTakenString.equals("null")) {
-                    Locale locale = context.getResources().getConfiguration().getLocales().get(0);
-                    SimpleDateFormat sdf = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss", locale);
-                    try {
-                        Date dateTaken = sdf.parse(dateTakenString);
-                        long dateTakenTimeStamp = dateTaken.getTime();
-                        albumItem.setDate(dateTakenTimeStamp);
-                        return;
-                    } catch (ParseException e) {
-                        e.printStackTrace();
-                    }
+    //synchronous, doesn't touch the item; returns -1, if no date was found
+    private static long retrieveDateTaken(Context context, String path) {
+        long dateTaken = retrieveExifDateTaken(path);
+        if (dateTaken == -1) {
+            //exif didn't work try MediaStore
+            dateTaken = loadDateTakenFromMediaStore(context, path);
+        }
+        DateTakenCache.getInstance(context).put(path, dateTaken);
+        return dateTaken;
+    }
+
+    //returns -1, if the date couldn't be read
+    private static long retrieveExifDateTaken(String path) {
+        if (!MediaType.doesSupportExif(path)) {
+            return -1;
+        }
+
+        String dateTakenString;
+        try {
+            //only parses the exif header, without opening a content uri
+            ExifInterface exif = new ExifInterface(path);
+            dateTakenString = exif.getAttribute(ExifInterface.TAG_DATETIME);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return -1;
+        }
+
+        if (dateTakenString != null) {
+            try {
+                Date dateTaken = dateFormat.get().parse(dateTakenString);
+                if (dateTaken != null) {
+                    return dateTaken.getTime();
                 }
+            } catch (ParseException e) {
+                e.printStackTrace();
             }
         }
-
-        //exif didn't work try MediaStore
-        tryToLoadDateTakenFromMediaStore(context, albumItem);
+        return -1;
     }
 
-    private static void tryToLoadDateTakenFromMediaStore(final Context context, final AlbumItem albumItem) {
+    //returns -1, if the item isn't in MediaStore
+    private static long loadDateTakenFromMediaStore(final Context context, final String path) {
         String[] projection = {MediaStore.Images.ImageColumns.DATE_TAKEN};
 
         String selection = MediaStore.Images.Media.DATA + " = ?";
@@ -124,16 +258,17 @@ public class DateTakenRetriever {
                 .query(queryUri,
                         projection,
                         selection,
-                        new String[]{albumItem.getPath()},
+                        new String[]{path},
                         null);
 
+        long dateTaken = -1;
         if (cursor != null) {
             if (cursor.moveToFirst()) {
                 int dateAddedColumn = cursor.getColumnIndex(MediaStore.Images.ImageColumns.DATE_TAKEN);
-                long dateTaken = cursor.getLong(dateAddedColumn);
-                albumItem.setDate(dateTaken);
+                dateTaken = cursor.getLong(dateAddedColumn);
             }
             cursor.close();
         }
+        return dateTaken;
     }
 }
@@ -4,13 +4,29 @@ import android.content.Context;
 import android.net.Uri;
 import android.webkit.MimeTypeMap;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+
 public class MediaType {
 
+    public enum Kind {
+        NONE, IMAGE, GIF, RAW, VIDEO
+    }
+
     public static boolean isMedia(String path) {
-        return checkImageExtension(path) ||
-                checkRAWExtension(path) ||
-                checkGifExtension(path) ||
-                checkVideoExtension(path);
+        return getKind(path) != Kind.NONE;
+    }
+
+    //classifies the path by its extension with a single lookup, without allocating
+    public static Kind getKind(String path) {
+        if (path == null) {
+            return Kind.NONE;
+        }
+        ExtensionTable table = extensionTable;
+        int slot = table.find(getExtensionKey(path));
+        return slot != -1 ? table.kinds[slot] : Kind.NONE;
     }
 
     public static String getMimeType(Context context, String path) {
@@ -25,13 +41,35 @@ public class MediaType {
         return mimeType;
     }
 
+    //without asking the ContentResolver: by the extension, or else the kind of the path
+    public static String getMimeType(String path) {
+        int dot = path.lastIndexOf('.');
+        if (dot != -1 && dot > path.lastIndexOf('/')) {
+            String fileExtension = path.substring(dot + 1).toLowerCase(Locale.US);
+            String mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(fileExtension);
+            if (mimeType != null) {
+                return mimeType;
+            }
+        }
+        switch (getKind(path)) {
+            case GIF:
+                return "image/gif";
+            case IMAGE:
+            case RAW:
+                return "image/*";
+            case VIDEO:
+                return "video/*";
+        }
+        return null;
+    }
+
     public static String getMimeType(Context context, Uri uri) {
         return context.getContentResolver().getType(uri);
     }
 
     //trying to check via mimeType
     public static boolean isImage(String path) {
-        return path != null && checkImageExtension(path);
+        return getKind(path) == Kind.IMAGE;
     }
 
     public static boolean isImage(Context context, Uri uri) {
@@ -45,7 +83,7 @@ public class MediaType {
     }
 
     public static boolean isVideo(String path) {
-        return path != null && checkVideoExtension(path);
+        return getKind(path) == Kind.VIDEO;
     }
 
     public static boolean isVideo(Context context, Uri uri) {
@@ -59,28 +97,28 @@ public class MediaType {
     }
 
     public static boolean isGif(String path) {
-        return path != null && checkGifExtension(path);
+        return getKind(path) == Kind.GIF;
     }
 
     public static boolean isGif(Context context, Uri uri) {
         if (uri != null) {
             String mimeType = getMimeType(context, uri);
             if (mimeType != null) {
-                return checkGifExtension(mimeType);
+                return mimeType.endsWith("gif");
             }
         }
         return false;
     }
 
     public static boolean isRAWImage(String path) {
-        return path != null && checkRAWExtension(path);
+        return getKind(path) == Kind.RAW;
     }
 
     public static boolean isRAWImage(Context context, Uri uri) {
         if (uri != null) {
             String mimeType = getMimeType(context, uri);
             if (mimeType != null) {
-                return checkRAWExtension(mimeType);
+                return mimeType.endsWith("dng");
             }
         }
         return false;
@@ -94,32 +132,138 @@ public class MediaType {
     private static String[] rawExtension = {"dng"};
     private static String[] exifExtensions = {"jpg", "jpe", "jpeg", "bmp", "dng"};
 
+    //enabled in the settings, might not be supported by every device
+    private static String[] additionalImageExtensions = {"heic", "webp"};
+    private static String[] additionalVideoExtensions = {"3gp", "mov"};
+    private static String[] additionalRawExtensions = {"cr2", "nef"};
+    private static String[] additionalExifExtensions = {"cr2", "nef"};
+
+    //extensions are packed into a long, one (ascii) char per byte
+    private static final int MAX_EXTENSION_LENGTH = 8;
+
+    private static volatile ExtensionTable extensionTable = createExtensionTable(false);
+
+    public static void useAdditionalFileTypes(boolean additionalFileTypes) {
+        extensionTable = createExtensionTable(additionalFileTypes);
+    }
+
     public static boolean doesSupportExif(String path) {
-        return checkExtension(path, exifExtensions);
+        if (path == null) {
+            return false;
+        }
+        ExtensionTable table = extensionTable;
+        int slot = table.find(getExtensionKey(path));
+        return slot != -1 && table.exif[slot];
     }
 
-    private static boolean checkImageExtension(String path) {
-        return checkExtension(path, imageExtensions);
+    private static ExtensionTable createExtensionTable(boolean additionalFileTypes) {
+        HashMap<String, Kind> extensions = new HashMap<>();
+        HashSet<String> exif = new HashSet<>();
+        putExtensions(extensions, imageExtensions, Kind.IMAGE);
+        putExtensions(extensions, videoExtensions, Kind.VIDEO);
+        putExtensions(extensions, gifExtension, Kind.GIF);
+        putExtensions(extensions, rawExtension, Kind.RAW);
+        addAll(exif, exifExtensions);
+        if (additionalFileTypes) {
+            putExtensions(extensions, additionalImageExtensions, Kind.IMAGE);
+            putExtensions(extensions, additionalVideoExtensions, Kind.VIDEO);
+            putExtensions(extensions, additionalRawExtensions, Kind.RAW);
+            addAll(exif, additionalExifExtensions);
+        }
+        return new ExtensionTable(extensions, exif);
     }
 
-    private static boolean checkVideoExtension(String path) {
-        return checkExtension(path, videoExtensions);
+    private static void putExtensions(HashMap<String, Kind> map, String[] extensions, Kind kind) {
+        for (int i = 0; i < extensions.length; i++) {
+            map.put(extensions[i], kind);
+        }
     }
 
-    private static boolean checkGifExtension(String path) {
-        return checkExtension(path, gifExtension);
+    private static void addAll(HashSet<String> set, String[] extensions) {
+        for (int i = 0; i < extensions.length; i++) {
+            set.add(extensions[i]);
+        }
     }
 
-    private static boolean checkRAWExtension(String path) {
-        return checkExtension(path, rawExtension);
+    //scans back from the end of the path to the '.', lower-casing the chars while packing them;
+    //returns 0, if there is no extension, or it can't be in the table (too long, not ascii)
+    private static long getExtensionKey(String path) {
+        int length = path.length();
+        int dot = -1;
+        for (int i = length - 1; i >= 0 && length - i <= MAX_EXTENSION_LENGTH + 1; i--) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                dot = i;
+                break;
+            } else if (c == '/') {
+                break;
+            }
+        }
+
+        if (dot == -1 || dot == length - 1) {
+            return 0;
+        }
+
+        long key = 0;
+        for (int i = dot + 1; i < length; i++) {
+            char c = path.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            } else if (c > 0x7F) {
+                return 0;
+            }
+            key = (key << 8) | c;
+        }
+        return key;
     }
 
-    private static boolean checkExtension(String path, String[] extensions) {
-        for (int i = 0; i < extensions.length; i++) {
-            if (path.toLowerCase().endsWith(extensions[i])) {
-                return true;
+    //open addressing hash table: packed extension --> kind
+    private static final class ExtensionTable {
+        private final long[] keys;
+        private final Kind[] kinds;
+        private final boolean[] exif;
+        private final int mask;
+
+        ExtensionTable(HashMap<String, Kind> extensions, HashSet<String> exifExtensions) {
+            //at most a quarter full, to keep probe sequences short
+            int capacity = 16;
+            while (capacity < extensions.size() * 4) {
+                capacity <<= 1;
+            }
+            keys = new long[capacity];
+            kinds = new Kind[capacity];
+            exif = new boolean[capacity];
+            mask = capacity - 1;
+
+            for (Map.Entry<String, Kind> entry : extensions.entrySet()) {
+                long key = getExtensionKey("." + entry.getKey());
+                int slot = hash(key) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                kinds[slot] = entry.getValue();
+                exif[slot] = exifExtensions.contains(entry.getKey());
             }
         }
-        return false;
+
+        //returns the slot of the key, -1 if it isn't in the table
+        int find(long key) {
+            if (key == 0) {
+                return -1;
+            }
+            int slot = hash(key) & mask;
+            while (keys[slot] != 0) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private static int hash(long key) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+        }
     }
 }
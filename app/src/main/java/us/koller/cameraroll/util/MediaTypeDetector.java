@@ -0,0 +1,249 @@
+package us.koller.cameraroll.util;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+//classifies content by its first bytes (magic numbers),
+//for uris from other apps, which often come without (or with a wrong) extension or mimeType;
+//results of file uris are cached per path and lastModified
+public class MediaTypeDetector {
+
+    private static final int HEADER_SIZE = 32;
+    //the DNG tag is in the first IFD of a TIFF file, usually within the first few hundred bytes
+    private static final int TIFF_HEADER_SIZE = 4096;
+
+    private static final int CACHE_SIZE = 256;
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] GIF = {'G', 'I', 'F', '8'};
+    private static final byte[] RIFF = {'R', 'I', 'F', 'F'};
+    private static final byte[] WEBP = {'W', 'E', 'B', 'P'};
+    private static final byte[] FTYP = {'f', 't', 'y', 'p'};
+    private static final byte[] MATROSKA = {0x1A, 0x45, (byte) 0xDF, (byte) 0xA3};
+    //DNG is a TIFF file, with a DNGVersion tag
+    private static final byte[] TIFF_LITTLE_ENDIAN = {'I', 'I', 0x2A, 0x00};
+    private static final byte[] TIFF_BIG_ENDIAN = {'M', 'M', 0x00, 0x2A};
+    private static final int TIFF_TAG_DNG_VERSION = 0xC612;
+    private static final int TIFF_IFD_ENTRY_SIZE = 12;
+
+    //ftyp brands of HEIF images
+    private static final byte[][] HEIF_BRANDS = {
+            {'h', 'e', 'i', 'c'}, {'h', 'e', 'i', 'x'}, {'h', 'e', 'v', 'c'},
+            {'h', 'e', 'v', 'x'}, {'m', 'i', 'f', '1'}, {'m', 's', 'f', '1'}};
+    //ftyp brands of (mp4, 3gp, mov) videos, 3 byte entries match any brand starting with them;
+    //other brands (e.g. avif, crx, M4A) are left to the mimeType
+    private static final byte[][] VIDEO_BRANDS = {
+            {'i', 's', 'o', 'm'}, {'i', 's', 'o', '2'}, {'i', 's', 'o', '4'},
+            {'i', 's', 'o', '5'}, {'i', 's', 'o', '6'}, {'m', 'p', '4', '1'},
+            {'m', 'p', '4', '2'}, {'a', 'v', 'c', '1'}, {'q', 't', ' ', ' '},
+            {'3', 'g', 'p'}, {'3', 'g', '2'}, {'3', 'g', 'e'}, {'3', 'g', 'g'},
+            {'M', '4', 'V', ' '}, {'M', '4', 'V', 'H'}, {'M', '4', 'V', 'P'},
+            {'M', 'S', 'N', 'V'}, {'d', 'a', 's', 'h'}, {'f', '4', 'v', ' '},
+            {'m', 'm', 'p', '4'}, {'X', 'A', 'V', 'C'}};
+
+    private static class Entry {
+        private long lastModified;
+        private MediaType.Kind kind;
+
+        Entry(long lastModified, MediaType.Kind kind) {
+            this.lastModified = lastModified;
+            this.kind = kind;
+        }
+    }
+
+    //LruCache is thread-safe;
+    //created lazily, so getKind(byte[], int) can be unit tested without android
+    private static LruCache<String, Entry> cache;
+
+    private static synchronized LruCache<String, Entry> getCache() {
+        if (cache == null) {
+            cache = new LruCache<>(CACHE_SIZE);
+        }
+        return cache;
+    }
+
+    //single classification of the uri: the content is sniffed,
+    //only if it isn't recognized, the ContentResolver is asked for the mimeType
+    public static MediaType.Kind getKind(Context context, Uri uri) {
+        if (uri == null) {
+            return MediaType.Kind.NONE;
+        }
+
+        //content uris have no revision to notice changed content, they aren't cached
+        String key = null;
+        long lastModified = 0;
+        if ("file".equals(uri.getScheme()) && uri.getPath() != null) {
+            key = uri.getPath();
+            lastModified = new File(key).lastModified();
+        }
+
+        if (key != null) {
+            Entry entry = getCache().get(key);
+            if (entry != null && entry.lastModified == lastModified) {
+                return entry.kind;
+            }
+        }
+
+        MediaType.Kind kind = MediaType.Kind.NONE;
+        InputStream inputStream = null;
+        try {
+            inputStream = context.getContentResolver().openInputStream(uri);
+            if (inputStream != null) {
+                byte[] header = new byte[HEADER_SIZE];
+                int length = readHeader(inputStream, header, 0);
+                if (isTiff(header, length)) {
+                    //read on, up to the first IFD
+                    header = Arrays.copyOf(header, TIFF_HEADER_SIZE);
+                    length = readHeader(inputStream, header, length);
+                }
+                kind = getKind(header, length);
+            }
+        } catch (IOException | SecurityException e) {
+            e.printStackTrace();
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        if (kind == MediaType.Kind.NONE) {
+            kind = getKind(MediaType.getMimeType(context, uri));
+        }
+
+        if (key != null) {
+            getCache().put(key, new Entry(lastModified, kind));
+        }
+        return kind;
+    }
+
+    //fills the header, starting at length; returns the new length
+    private static int readHeader(InputStream inputStream, byte[] header, int length) throws IOException {
+        while (length < header.length) {
+            int read = inputStream.read(header, length, header.length - length);
+            if (read == -1) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    //NONE, if the content isn't recognized (then the mimeType decides, e.g. for plain TIFF images)
+    static MediaType.Kind getKind(byte[] header, int length) {
+        if (length >= 3 && header[0] == (byte) 0xFF
+                && header[1] == (byte) 0xD8 && header[2] == (byte) 0xFF) {
+            return MediaType.Kind.IMAGE;
+        }
+        if (matches(header, length, 0, PNG)) {
+            return MediaType.Kind.IMAGE;
+        }
+        if (matches(header, length, 0, GIF)) {
+            return MediaType.Kind.GIF;
+        }
+        if (matches(header, length, 0, RIFF) && matches(header, length, 8, WEBP)) {
+            return MediaType.Kind.IMAGE;
+        }
+        if (matches(header, length, 4, FTYP) && length >= 12) {
+            for (int i = 0; i < HEIF_BRANDS.length; i++) {
+                if (matches(header, length, 8, HEIF_BRANDS[i])) {
+                    return MediaType.Kind.IMAGE;
+                }
+            }
+            for (int i = 0; i < VIDEO_BRANDS.length; i++) {
+                if (matches(header, length, 8, VIDEO_BRANDS[i])) {
+                    return MediaType.Kind.VIDEO;
+                }
+            }
+            return MediaType.Kind.NONE;
+        }
+        if (matches(header, length, 0, MATROSKA)) {
+            return MediaType.Kind.VIDEO;
+        }
+        if (isTiff(header, length) && hasDngVersionTag(header, length)) {
+            return MediaType.Kind.RAW;
+        }
+        return MediaType.Kind.NONE;
+    }
+
+    private static boolean isTiff(byte[] header, int length) {
+        return matches(header, length, 0, TIFF_LITTLE_ENDIAN)
+                || matches(header, length, 0, TIFF_BIG_ENDIAN);
+    }
+
+    //looks for the DNGVersion tag in the first IFD;
+    //false, if the IFD isn't within the header
+    private static boolean hasDngVersionTag(byte[] header, int length) {
+        boolean littleEndian = header[0] == 'I';
+        long ifdOffset = readInt(header, 4, littleEndian) & 0xFFFFFFFFL;
+        if (ifdOffset + 2 > length) {
+            return false;
+        }
+
+        int offset = (int) ifdOffset;
+        int entryCount = readShort(header, offset, littleEndian);
+        offset += 2;
+        for (int i = 0; i < entryCount && offset + 2 <= length; i++) {
+            int tag = readShort(header, offset, littleEndian);
+            if (tag == TIFF_TAG_DNG_VERSION) {
+                return true;
+            } else if (tag > TIFF_TAG_DNG_VERSION) {
+                //entries are sorted by tag
+                return false;
+            }
+            offset += TIFF_IFD_ENTRY_SIZE;
+        }
+        return false;
+    }
+
+    private static int readShort(byte[] header, int offset, boolean littleEndian) {
+        int b0 = header[offset] & 0xFF;
+        int b1 = header[offset + 1] & 0xFF;
+        return littleEndian ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    private static int readInt(byte[] header, int offset, boolean littleEndian) {
+        if (littleEndian) {
+            return readShort(header, offset, true) | (readShort(header, offset + 2, true) << 16);
+        }
+        return (readShort(header, offset, false) << 16) | readShort(header, offset + 2, false);
+    }
+
+    private static boolean matches(byte[] header, int length, int offset, byte[] magic) {
+        if (length < offset + magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header[offset + i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //fallback for content, that couldn't be read or isn't recognized
+    private static MediaType.Kind getKind(String mimeType) {
+        if (mimeType == null) {
+            return MediaType.Kind.NONE;
+        }
+        if (mimeType.endsWith("gif")) {
+            return MediaType.Kind.GIF;
+        } else if (mimeType.endsWith("dng")) {
+            return MediaType.Kind.RAW;
+        } else if (mimeType.contains("image")) {
+            return MediaType.Kind.IMAGE;
+        } else if (mimeType.contains("video")) {
+            return MediaType.Kind.VIDEO;
+        }
+        return MediaType.Kind.NONE;
+    }
+}
@@ -1,10 +1,13 @@
 package us.koller.cameraroll.util;
 
-import android.app.Activity;
+import android.content.Context;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 import us.koller.cameraroll.data.Album;
 import us.koller.cameraroll.data.Settings;
@@ -15,6 +18,9 @@ public class SortUtil {
     public interface Sortable {
         String getName();
 
+        //natural sort key of the name, cached until the name or the locale changes
+        NameKey getNameKey();
+
         long getDate();
 
         String getPath();
@@ -26,37 +32,226 @@ public class SortUtil {
     public static final int BY_NAME = 2;
     public static final int BY_SIZE = 3;
 
-    public static void sortAlbums(Activity context, ArrayList<Album> albums) {
+    //below: insertion sort
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    //above: sort both halves in parallel
+    private static final int PARALLEL_THRESHOLD = 50000;
+
+    //sorts the items of albums, that weren't handed to the ui yet, and the (new) list of albums;
+    //albums handed out before (streamed earlier, or reused from the MediaIndex) are left alone,
+    //their items are only re-sorted on the ui thread
+    public static void sortAlbums(Context context, ArrayList<Album> albums) {
         Settings settings = Settings.getInstance(context);
 
         int sortAlbumBy = settings.sortAlbumBy();
         for (int i = 0; i < albums.size(); i++) {
-            sort(albums.get(i).getAlbumItems(), sortAlbumBy);
+            sortNewAlbum(albums.get(i), sortAlbumBy);
         }
 
-        int sortAlbumsBy = settings.sortAlbumsBy();
+        sortAlbums(albums, settings.sortAlbumsBy());
+    }
+
+    //sorts the list of albums, not their items
+    public static void sortAlbums(ArrayList<Album> albums, int sortAlbumsBy) {
         switch (sortAlbumsBy) {
-            case BY_NAME:
+            case BY_SIZE:
+                Collections.sort(albums, getAlbumsComparator(sortAlbumsBy));
+                break;
             case BY_DATE:
-                sort(albums, sortAlbumsBy);
-                return;
+                sortByDate(albums);
+                break;
+            default:
+                sortByName(albums);
+                break;
+        }
+    }
+
+    //sorts the items once, before the album is first handed to the ui
+    public static void sortNewAlbum(Album album, int by) {
+        if (album.areItemsSorted()) {
+            return;
+        }
+        //items of windowed albums are sorted when they are loaded
+        if (album.areItemsLoaded()) {
+            sort(album.getAlbumItems(), by);
+        }
+        album.setItemsSorted();
+    }
+
+    public static Comparator<Album> getAlbumsComparator(int sortAlbumsBy) {
+        switch (sortAlbumsBy) {
             case BY_SIZE:
-                // Sorting
-                Collections.sort(albums, new Comparator<Album>() {
+                return new Comparator<Album>() {
                     @Override
                     public int compare(Album a1, Album a2) {
                         if (a1 != null && a2 != null) {
                             if (a1.pinned() ^ a2.pinned()) {
                                 return a2.pinned() ? 1 : -1;
                             }
-                            Integer a1_size = a1.getAlbumItems().size();
-                            Integer a2_size = a2.getAlbumItems().size();
-                            return a2_size.compareTo(a1_size);
+                            int a1_size = a1.getItemCount();
+                            int a2_size = a2.getItemCount();
+                            return a1_size < a2_size ? 1 : (a1_size == a2_size ? 0 : -1);
                         }
                         return 0;
                     }
-                });
-                break;
+                };
+            case BY_DATE:
+                return new Comparator<Album>() {
+                    @Override
+                    public int compare(Album a1, Album a2) {
+                        return compareDate(a1, a2);
+                    }
+                };
+            default:
+                return new Comparator<Album>() {
+                    @Override
+                    public int compare(Album a1, Album a2) {
+                        return compareNames(a1, a2);
+                    }
+                };
+        }
+    }
+
+    //comparator for items, null if they can't be sorted that way
+    public static Comparator<Sortable> getComparator(int by) {
+        switch (by) {
+            case BY_NAME:
+                return new Comparator<Sortable>() {
+                    @Override
+                    public int compare(Sortable s1, Sortable s2) {
+                        return compareNames(s1, s2);
+                    }
+                };
+            case BY_DATE:
+                return new Comparator<Sortable>() {
+                    @Override
+                    public int compare(Sortable s1, Sortable s2) {
+                        return compareDate(s1, s2);
+                    }
+                };
+        }
+        return null;
+    }
+
+    //position to insert the item at, to keep the sorted list in order (after equal items)
+    public static <T> int getInsertionIndex(ArrayList<T> sorted, T item,
+                                            Comparator<? super T> comparator) {
+        int low = 0;
+        int high = sorted.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparator.compare(sorted.get(middle), item) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    //incremental re-sort: only the changed items are repositioned, all other items have to be in order already;
+    //the changed items are sorted on their own and merged with the others, O(n + k log n);
+    //returns the moves {from, to} in the order they were applied (e.g. for notifyItemMoved()),
+    //every changed item is moved right behind its predecessor in the new order
+    public static <T> ArrayList<int[]> resort(final ArrayList<T> sortables, Collection<? extends T> changed,
+                                              final Comparator<? super T> comparator) {
+        ArrayList<int[]> moves = new ArrayList<>();
+        if (changed.size() == 0) {
+            return moves;
+        }
+
+        Set<T> changedItems = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+        changedItems.addAll(changed);
+
+        //indices of the unchanged items (in order) and of the changed ones
+        int size = sortables.size();
+        int[] unchanged = new int[size];
+        int unchangedCount = 0;
+        ArrayList<Integer> changedIndices = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (changedItems.contains(sortables.get(i))) {
+                changedIndices.add(i);
+            } else {
+                unchanged[unchangedCount++] = i;
+            }
+        }
+        if (changedIndices.size() == 0) {
+            return moves;
+        }
+        //stable, equal changed items keep their order
+        Collections.sort(changedIndices, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return comparator.compare(sortables.get(i1), sortables.get(i2));
+            }
+        });
+
+        //current positions are counted by a PositionTree over the old indices (+1, 0 is the head of the list):
+        //an item, that wasn't moved yet, counts at its old index,
+        //a moved item at the old index of the unchanged item it follows
+        PositionTree positions = new PositionTree(size);
+        ArrayList<T> sorted = new ArrayList<>(size);
+        int u = 0;
+        int anchor = 0;
+        for (int i = 0; i < changedIndices.size(); i++) {
+            int index = changedIndices.get(i);
+            T item = sortables.get(index);
+            //unchanged items go first, if equal
+            while (u < unchangedCount && comparator.compare(sortables.get(unchanged[u]), item) <= 0) {
+                sorted.add(sortables.get(unchanged[u]));
+                anchor = unchanged[u] + 1;
+                u++;
+            }
+            sorted.add(item);
+
+            int from = positions.count(index);
+            positions.add(index + 1, -1);
+            int to = positions.count(anchor);
+            positions.add(anchor, 1);
+            if (from != to) {
+                moves.add(new int[]{from, to});
+            }
+        }
+        while (u < unchangedCount) {
+            sorted.add(sortables.get(unchanged[u]));
+            u++;
+        }
+
+        for (int i = 0; i < size; i++) {
+            sortables.set(i, sorted.get(i));
+        }
+        return moves;
+    }
+
+    //fenwick tree over the keys 0..size, initially every key but 0 counts one
+    private static class PositionTree {
+        private int[] tree;
+
+        PositionTree(int size) {
+            tree = new int[size + 2];
+            //linear construction
+            for (int i = 2; i < tree.length; i++) {
+                tree[i] += 1;
+                int parent = i + (i & -i);
+                if (parent < tree.length) {
+                    tree[parent] += tree[i];
+                }
+            }
+        }
+
+        void add(int key, int delta) {
+            for (int i = key + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        //sum of the keys 0..key
+        int count(int key) {
+            int count = 0;
+            for (int i = key + 1; i > 0; i -= i & -i) {
+                count += tree[i];
+            }
+            return count;
         }
     }
 
@@ -72,23 +267,167 @@ public class SortUtil {
     }
 
     public static void sortByName(ArrayList<? extends Sortable> sortables) {
-        // Sorting
-        Collections.sort(sortables, new Comparator<Sortable>() {
-            @Override
-            public int compare(Sortable s1, Sortable s2) {
-                return compareNames(s1, s2);
-            }
-        });
+        sortByKeys(sortables, false);
     }
 
     public static void sortByDate(ArrayList<? extends Sortable> sortables) {
-        // Sorting
-        Collections.sort(sortables, new Comparator<Sortable>() {
-            @Override
-            public int compare(Sortable s1, Sortable s2) {
-                return compareDate(s1, s2);
+        sortByKeys(sortables, true);
+    }
+
+    //keys of the sortables, extracted once,
+    //so comparisons only read arrays instead of calling the Sortable methods
+    private static class Keys {
+        private ArrayList<? extends Sortable> sortables;
+        private boolean[] isNull;
+        private boolean[] pinned;
+        //null when sorting by name
+        private long[] dates;
+        //when sorting by date: only read for items with the same date
+        //(the halves of a parallel sort touch disjoint indices)
+        private NameKey[] names;
+
+        Keys(ArrayList<? extends Sortable> sortables, boolean byDate) {
+            this.sortables = sortables;
+            int size = sortables.size();
+            isNull = new boolean[size];
+            pinned = new boolean[size];
+            dates = byDate ? new long[size] : null;
+            names = new NameKey[size];
+            for (int i = 0; i < size; i++) {
+                Sortable s = sortables.get(i);
+                if (s != null) {
+                    pinned[i] = s.pinned();
+                    if (byDate) {
+                        dates[i] = s.getDate();
+                    } else {
+                        names[i] = s.getNameKey();
+                    }
+                } else {
+                    isNull[i] = true;
+                }
             }
-        });
+        }
+
+        private NameKey getName(int i) {
+            NameKey name = names[i];
+            if (name == null) {
+                name = sortables.get(i).getNameKey();
+                names[i] = name;
+            }
+            return name;
+        }
+
+        //same order as compareDate() & compareNames()
+        int compare(int i1, int i2) {
+            if (isNull[i1] || isNull[i2]) {
+                return 0;
+            }
+            if (pinned[i1] ^ pinned[i2]) {
+                return pinned[i2] ? 1 : -1;
+            }
+            if (dates != null && dates[i1] != dates[i2]) {
+                //newest first
+                return dates[i1] < dates[i2] ? 1 : -1;
+            }
+            return getName(i1).compareTo(getName(i2));
+        }
+    }
+
+    //stable, like Collections.sort()
+    private static <T extends Sortable> void sortByKeys(ArrayList<T> sortables, boolean byDate) {
+        sortByKeys(sortables, byDate, PARALLEL_THRESHOLD);
+    }
+
+    //parallelThreshold: e.g. to compare both ways in SortUtilBenchmark
+    static <T extends Sortable> void sortByKeys(ArrayList<T> sortables, boolean byDate,
+                                                int parallelThreshold) {
+        final int size = sortables.size();
+        if (size < 2) {
+            return;
+        }
+
+        final Keys keys = new Keys(sortables, byDate);
+        final int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        final int[] temp = new int[size];
+
+        if (size >= parallelThreshold && Runtime.getRuntime().availableProcessors() > 1) {
+            final int middle = size >>> 1;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    mergeSort(keys, order, temp, 0, middle);
+                }
+            });
+            thread.start();
+            mergeSort(keys, order, temp, middle, size);
+            joinUninterruptibly(thread);
+            merge(keys, order, temp, 0, middle, size);
+        } else {
+            mergeSort(keys, order, temp, 0, size);
+        }
+
+        //apply the order
+        ArrayList<T> unsorted = new ArrayList<>(sortables);
+        for (int i = 0; i < size; i++) {
+            sortables.set(i, unsorted.get(order[i]));
+        }
+    }
+
+    //sorts order[from, to)
+    private static void mergeSort(Keys keys, int[] order, int[] temp, int from, int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                int index = order[i];
+                int k = i - 1;
+                while (k >= from && keys.compare(order[k], index) > 0) {
+                    order[k + 1] = order[k];
+                    k--;
+                }
+                order[k + 1] = index;
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        mergeSort(keys, order, temp, from, middle);
+        mergeSort(keys, order, temp, middle, to);
+        merge(keys, order, temp, from, middle, to);
+    }
+
+    //merges the sorted ranges order[from, middle) and order[middle, to)
+    private static void merge(Keys keys, int[] order, int[] temp, int from, int middle, int to) {
+        if (keys.compare(order[middle - 1], order[middle]) <= 0) {
+            //already in order
+            return;
+        }
+
+        System.arraycopy(order, from, temp, from, to - from);
+        int i = from;
+        int k = middle;
+        for (int j = from; j < to; j++) {
+            if (k >= to || (i < middle && keys.compare(temp[i], temp[k]) <= 0)) {
+                order[j] = temp[i++];
+            } else {
+                order[j] = temp[k++];
+            }
+        }
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private static int compareNames(Sortable s1, Sortable s2) {
@@ -96,7 +435,7 @@ public class SortUtil {
             if (s1.pinned() ^ s2.pinned()) {
                 return s2.pinned() ? 1 : -1;
             }
-            return s1.getName().compareTo(s2.getName());
+            return s1.getNameKey().compareTo(s2.getNameKey());
         }
         return 0;
     }
@@ -106,13 +445,13 @@ public class SortUtil {
             if (s1.pinned() ^ s2.pinned()) {
                 return s2.pinned() ? 1 : -1;
             }
-            Long l1 = s1.getDate();
-            Long l2 = s2.getDate();
-            if (l1.equals(l2)) {
+            long l1 = s1.getDate();
+            long l2 = s2.getDate();
+            if (l1 == l2) {
                 //if date is equal --> sort by Name
                 return compareNames(s1, s2);
             }
-            return l2.compareTo(l1);
+            return l1 < l2 ? 1 : -1;
         }
         return 0;
     }
@@ -9,8 +9,11 @@ import android.provider.BaseColumns;
 import android.provider.MediaStore;
 import android.support.v4.provider.DocumentFile;
 import android.util.Log;
+import android.util.LruCache;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 
 //workarounds to handle removable storage
 
@@ -18,8 +21,19 @@ import java.util.Arrays;
 //https://github.com/arpitkh96/AmazeFileManager/blob/master/src/main/java/com/amaze/filemanager/filesystem/MediaStoreHack.java
 public class StorageUtil {
 
+    //max number of sql variables in one query is 999
+    private static final int MAX_PATHS_PER_QUERY = 500;
+
+    //path --> content-Uri, to not query MediaStore again for the same item (e.g. share, exif, mimeType)
+    private static final LruCache<String, Uri> contentUris = new LruCache<>(1024);
+
     //workaround to get content-Uri for items on removable storage
     public static Uri getContentUriFromFilePath(Context context, String path) {
+        Uri uri = contentUris.get(path);
+        if (uri != null) {
+            return uri;
+        }
+
         ContentResolver resolver = context.getContentResolver();
 
         Cursor cursor = resolver.query(MediaStore.Files.getContentUri("external"),
@@ -36,14 +50,94 @@ public class StorageUtil {
             cursor.close();
             ContentValues values = new ContentValues();
             values.put(MediaStore.MediaColumns.DATA, path);
-            return resolver.insert(MediaStore.Files.getContentUri("external"), values);
+            uri = resolver.insert(MediaStore.Files.getContentUri("external"), values);
         } else {
             int imageId = cursor.getInt(cursor.getColumnIndex(BaseColumns._ID));
-            Uri uri = MediaStore.Files.getContentUri("external").buildUpon().appendPath(
+            uri = MediaStore.Files.getContentUri("external").buildUpon().appendPath(
                     Integer.toString(imageId)).build();
             cursor.close();
-            return uri;
         }
+
+        if (uri != null) {
+            contentUris.put(path, uri);
+        }
+        return uri;
+    }
+
+    //resolves the content-Uris of all paths with one query (per 500 paths),
+    //instead of one query per path; only paths missing in MediaStore are resolved one by one.
+    //results are collected locally, the LruCache only saves queries (big selections might not fit into it)
+    public static ArrayList<Uri> getContentUrisFromFilePaths(Context context, String[] paths) {
+        long startTime = System.currentTimeMillis();
+
+        HashMap<String, Uri> resolved = new HashMap<>();
+        ArrayList<String> uncachedPaths = new ArrayList<>();
+        for (int i = 0; i < paths.length; i++) {
+            Uri uri = contentUris.get(paths[i]);
+            if (uri != null) {
+                resolved.put(paths[i], uri);
+            } else {
+                uncachedPaths.add(paths[i]);
+            }
+        }
+
+        ContentResolver resolver = context.getContentResolver();
+        Uri queryUri = MediaStore.Files.getContentUri("external");
+        for (int start = 0; start < uncachedPaths.size(); start += MAX_PATHS_PER_QUERY) {
+            int end = Math.min(start + MAX_PATHS_PER_QUERY, uncachedPaths.size());
+
+            StringBuilder selection = new StringBuilder(MediaStore.MediaColumns.DATA).append(" IN (");
+            String[] selectionArgs = new String[end - start];
+            for (int i = start; i < end; i++) {
+                selection.append(i == start ? "?" : ",?");
+                selectionArgs[i - start] = uncachedPaths.get(i);
+            }
+            selection.append(")");
+
+            //same as getContentUriFromFilePath(): the newest row of a path, if there are several
+            Cursor cursor = resolver.query(queryUri,
+                    new String[]{BaseColumns._ID, MediaStore.MediaColumns.DATA},
+                    selection.toString(), selectionArgs,
+                    MediaStore.MediaColumns.DATE_ADDED + " desc");
+            if (cursor == null) {
+                continue;
+            }
+
+            if (cursor.moveToFirst()) {
+                int idColumn = cursor.getColumnIndex(BaseColumns._ID);
+                int pathColumn = cursor.getColumnIndex(MediaStore.MediaColumns.DATA);
+                do {
+                    String path = cursor.getString(pathColumn);
+                    if (resolved.containsKey(path)) {
+                        continue;
+                    }
+                    Uri uri = queryUri.buildUpon().appendPath(
+                            Long.toString(cursor.getLong(idColumn))).build();
+                    resolved.put(path, uri);
+                    contentUris.put(path, uri);
+                } while (cursor.moveToNext());
+            }
+            cursor.close();
+        }
+
+        ArrayList<Uri> uris = new ArrayList<>();
+        for (int i = 0; i < paths.length; i++) {
+            Uri uri = resolved.get(paths[i]);
+            if (uri == null) {
+                //missing in MediaStore (--> inserted)
+                uri = getContentUriFromFilePath(context, paths[i]);
+            }
+            uris.add(uri);
+        }
+
+        Log.d("StorageUtil", "getContentUrisFromFilePaths(): " + String.valueOf(paths.length) + " paths, "
+                + String.valueOf(System.currentTimeMillis() - startTime) + " ms");
+        return uris;
+    }
+
+    //path was deleted or moved
+    public static void invalidateContentUri(String path) {
+        contentUris.remove(path);
     }
 
     public static DocumentFile parseDocumentFile(Context context, Uri treeUri, String path) {
@@ -0,0 +1,690 @@
+package us.koller.cameraroll.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ThumbnailUtils;
+import android.provider.MediaStore;
+import android.support.media.ExifInterface;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import us.koller.cameraroll.data.AlbumItem;
+import us.koller.cameraroll.data.Settings;
+
+//persistent store of grid-sized thumbnails (jpegs), so a cold scroll through an album
+//decodes kilobytes instead of full-size camera images;
+//the thumbnails of an album are packed into a single memory-mapped file in the cache dir;
+//a thumbnail is only valid as long as lastModified of its file didn't change.
+//the mappings of the open albums are capped in total, the files in the cache dir as well (least recently used first).
+//Glide loads them through ThumbnailLoader, with a Thumbnail as model
+public class ThumbnailCache {
+
+    private static final String DIR_NAME = "thumbnails";
+    private static final int VERSION = 2;
+
+    //file header: VERSION, thumbnail size
+    private static final int HEADER_SIZE = 8;
+    //record header: path hash, lastModified, length of the jpeg
+    private static final int RECORD_HEADER_SIZE = 20;
+
+    private static final int MAX_THUMBNAIL_SIZE = 512;
+    private static final int JPEG_QUALITY = 85;
+
+    //number of albums, whose files are kept open (& mapped):
+    //enough for all albums shown at once, e.g. the rows of the nested main screen
+    private static final int MAX_OPEN_ALBUMS = 16;
+    //address space is scarce in 32 bit processes: total size of the mappings of the open albums
+    static final int MAX_MAPPED_SIZE = 128 * 1024 * 1024;
+    //total size of the files in the cache dir
+    private static final long MAX_DIR_SIZE = 256 * 1024 * 1024;
+
+    private static ThumbnailCache instance;
+
+    private File dir;
+
+    //album path --> packed thumbnails, guarded by itself
+    private final LinkedHashMap<String, PackedFile> albums;
+
+    //a file is only opened by one thread at a time
+    private final Object openLock = new Object();
+    //cache dir was trimmed since the process started, guarded by openLock
+    private boolean dirTrimmed = false;
+
+    //Glide model: the thumbnail of a file, in the version given by lastModified
+    public static class Thumbnail {
+
+        private String path;
+        private long lastModified;
+
+        Thumbnail(String path, long lastModified) {
+            this.path = path;
+            this.lastModified = lastModified;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        //Glide's memory cache is keyed by the model
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Thumbnail)) {
+                return false;
+            }
+            Thumbnail thumbnail = (Thumbnail) o;
+            return lastModified == thumbnail.lastModified && path.equals(thumbnail.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * path.hashCode() + (int) (lastModified ^ (lastModified >>> 32));
+        }
+
+        @Override
+        public String toString() {
+            return "Thumbnail(" + path + ", " + String.valueOf(lastModified) + ")";
+        }
+    }
+
+    public static synchronized ThumbnailCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ThumbnailCache(Context context) {
+        dir = new File(context.getCacheDir(), DIR_NAME);
+        albums = new LinkedHashMap<String, PackedFile>(MAX_OPEN_ALBUMS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PackedFile> eldest) {
+                if (size() > MAX_OPEN_ALBUMS) {
+                    eldest.getValue().close();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    //size of a grid cell
+    private static int getThumbnailSize(Context context) {
+        int columnCount = Settings.getInstance(context).getColumnCount(context);
+        int size = context.getResources().getDisplayMetrics().widthPixels / columnCount;
+        return Math.min(size, MAX_THUMBNAIL_SIZE);
+    }
+
+    //model to load the grid thumbnail of the albumItem with Glide,
+    //null if it isn't cached (e.g. gifs, they are shown animated)
+    public static Thumbnail getThumbnail(AlbumItem albumItem) {
+        String path = albumItem.getPath();
+        if (Util.getParentPath(path) == null || MediaType.isGif(path)) {
+            return null;
+        }
+        return new Thumbnail(path, albumItem.getLastModified());
+    }
+
+    //called on a background thread (by Glide):
+    //returns the cached thumbnail (jpeg), or creates & caches it; null if it couldn't be created
+    ByteBuffer load(Context context, Thumbnail thumbnail) {
+        String albumPath = Util.getParentPath(thumbnail.getPath());
+        int size = getThumbnailSize(context);
+        long pathHash = getPathHash(thumbnail.getPath());
+
+        PackedFile packedFile = getPackedFile(albumPath, size);
+        if (packedFile != null) {
+            ByteBuffer cached = packedFile.get(pathHash, thumbnail.getLastModified());
+            if (cached != null) {
+                //empty: creating it failed before, for this version of the file
+                return cached.hasRemaining() ? cached : null;
+            }
+        }
+
+        byte[] created = createThumbnail(thumbnail.getPath(), size);
+        if (packedFile != null) {
+            if (created != null) {
+                packedFile.put(pathHash, thumbnail.getLastModified(), created);
+            } else {
+                //e.g. a corrupt file: don't decode it again on every bind, until it changes
+                packedFile.putNoThumbnail(pathHash, thumbnail.getLastModified());
+            }
+            trimMappings(packedFile);
+        }
+        return created != null ? ByteBuffer.wrap(created) : null;
+    }
+
+    private PackedFile getPackedFile(String albumPath, int size) {
+        PackedFile packedFile;
+        synchronized (albums) {
+            packedFile = albums.get(albumPath);
+        }
+        if (packedFile != null && packedFile.getThumbnailSize() >= size) {
+            return packedFile;
+        }
+
+        synchronized (openLock) {
+            synchronized (albums) {
+                packedFile = albums.get(albumPath);
+            }
+            if (packedFile != null) {
+                if (packedFile.getThumbnailSize() >= size) {
+                    //opened in the meantime
+                    return packedFile;
+                }
+                //grid cells got bigger
+                packedFile.close();
+            }
+
+            long startTime = System.currentTimeMillis();
+            packedFile = null;
+            //noinspection ResultOfMethodCallIgnored
+            dir.mkdirs();
+            File file = new File(dir, Long.toHexString(getPathHash(albumPath)));
+            boolean created = !file.exists();
+            try {
+                packedFile = PackedFile.open(file, size);
+                //recently used, for trimDir()
+                //noinspection ResultOfMethodCallIgnored
+                file.setLastModified(System.currentTimeMillis());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+
+            ArrayList<File> openFiles = new ArrayList<>();
+            synchronized (albums) {
+                if (packedFile != null) {
+                    albums.put(albumPath, packedFile);
+                } else {
+                    albums.remove(albumPath);
+                }
+                for (PackedFile openFile : albums.values()) {
+                    openFiles.add(openFile.getFile());
+                }
+            }
+            trimMappings(packedFile);
+
+            if (created || !dirTrimmed) {
+                int deleted = trimDir(dir, MAX_DIR_SIZE, openFiles);
+                dirTrimmed = true;
+                Log.d("ThumbnailCache", "trimDir(): " + String.valueOf(deleted) + " files deleted");
+            }
+
+            Log.d("ThumbnailCache", "open(" + albumPath + "): "
+                    + String.valueOf(packedFile != null ? packedFile.size() : 0) + " thumbnails, "
+                    + String.valueOf(System.currentTimeMillis() - startTime) + " ms");
+            return packedFile;
+        }
+    }
+
+    //closes the least recently used albums, until all mappings fit into MAX_MAPPED_SIZE
+    private void trimMappings(PackedFile keep) {
+        synchronized (albums) {
+            long mappedSize = 0;
+            for (PackedFile packedFile : albums.values()) {
+                mappedSize += packedFile.getCapacity();
+            }
+            //access order: least recently used first
+            Iterator<PackedFile> iterator = albums.values().iterator();
+            while (mappedSize > MAX_MAPPED_SIZE && iterator.hasNext()) {
+                PackedFile packedFile = iterator.next();
+                if (packedFile != keep) {
+                    mappedSize -= packedFile.getCapacity();
+                    packedFile.close();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    //deletes the least recently used files (except the open ones), until the dir fits into maxSize;
+    //returns the number of deleted files
+    static int trimDir(File dir, long maxSize, List<File> openFiles) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+
+        long size = 0;
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            size += files[i].length();
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        if (size <= maxSize) {
+            return 0;
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Long.compare(lastModified[i1], lastModified[i2]);
+            }
+        });
+        int deleted = 0;
+        for (int i = 0; i < order.length && size > maxSize; i++) {
+            File file = files[order[i]];
+            if (openFiles.contains(file)) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                size -= length;
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    //64 bit FNV-1a hash
+    private static long getPathHash(String path) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            hash ^= path.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    //center-cropped size x size jpeg
+    private static byte[] createThumbnail(String path, int size) {
+        Bitmap bitmap;
+        if (MediaType.isVideo(path)) {
+            bitmap = ThumbnailUtils.createVideoThumbnail(path, MediaStore.Images.Thumbnails.MINI_KIND);
+        } else {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(path, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+
+            //biggest power of 2, that still leaves the shorter side >= size
+            int sampleSize = 1;
+            while (Math.min(options.outWidth, options.outHeight) / (sampleSize * 2) >= size) {
+                sampleSize *= 2;
+            }
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = sampleSize;
+            bitmap = BitmapFactory.decodeFile(path, options);
+            if (bitmap != null && MediaType.doesSupportExif(path)) {
+                bitmap = rotate(bitmap, getRotation(path));
+            }
+        }
+
+        if (bitmap == null) {
+            return null;
+        }
+
+        Bitmap thumbnail = ThumbnailUtils.extractThumbnail(bitmap, size, size,
+                ThumbnailUtils.OPTIONS_RECYCLE_INPUT);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        thumbnail.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, os);
+        thumbnail.recycle();
+        return os.toByteArray();
+    }
+
+    private static int getRotation(String path) {
+        try {
+            ExifInterface exif = new ExifInterface(path);
+            switch (exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL)) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    private static Bitmap rotate(Bitmap bitmap, int rotation) {
+        if (rotation == 0) {
+            return bitmap;
+        }
+        Matrix matrix = new Matrix();
+        matrix.postRotate(rotation);
+        Bitmap rotated = Bitmap.createBitmap(bitmap, 0, 0,
+                bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (rotated != bitmap) {
+            bitmap.recycle();
+        }
+        return rotated;
+    }
+
+    //file layout: header, followed by records (path hash, lastModified, length, jpeg), zeros up to the end;
+    //records are only appended, a newer record of a path replaces the older one;
+    //a record with length NO_THUMBNAIL has no jpeg: it couldn't be created for this lastModified.
+    //reads copy the jpeg out of the mapping, under the lock, so a mapping can be unmapped
+    //as soon as it's replaced by a bigger one, or the file is closed (instead of once it's garbage collected)
+    static class PackedFile {
+
+        private static final int INITIAL_CAPACITY = 64 * 1024;
+        //a single file can't be mapped beyond the total
+        private static final int MAX_CAPACITY = MAX_MAPPED_SIZE;
+        //a longer record is treated as corrupt
+        static final int MAX_THUMBNAIL_BYTES = 4 * 1024 * 1024;
+        //not -1: that is a typical garbage length of a partially written page
+        private static final int NO_THUMBNAIL = Integer.MIN_VALUE;
+
+        private File file;
+        //null once closed, guarded by this
+        private RandomAccessFile randomAccessFile;
+        private int thumbnailSize;
+
+        //path hash --> position of the newest record
+        private final ConcurrentHashMap<Long, Integer> index;
+        //end of the last record, guarded by this
+        private int length;
+        //bytes of replaced records
+        private int deadBytes;
+
+        //mapping of the whole file, replaced by a bigger one when the file grows;
+        //null once closed, guarded by this
+        private MappedByteBuffer buffer;
+
+        private PackedFile(File file, RandomAccessFile randomAccessFile) {
+            this.file = file;
+            this.randomAccessFile = randomAccessFile;
+            index = new ConcurrentHashMap<>();
+        }
+
+        static PackedFile open(File file, int thumbnailSize) throws IOException {
+            if (file.exists()) {
+                PackedFile packedFile = new PackedFile(file, new RandomAccessFile(file, "rw"));
+                boolean valid = false;
+                try {
+                    valid = packedFile.readIndex(thumbnailSize);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+
+                if (valid) {
+                    if (packedFile.deadBytes > packedFile.length / 2) {
+                        try {
+                            return packedFile.compact();
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                    return packedFile;
+                }
+
+                //outdated, too small or corrupt thumbnails: start over, with a new file
+                packedFile.close();
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+            }
+            return create(file, thumbnailSize);
+        }
+
+        private static PackedFile create(File file, int thumbnailSize) throws IOException {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            PackedFile packedFile = new PackedFile(file, randomAccessFile);
+            try {
+                randomAccessFile.setLength(INITIAL_CAPACITY);
+                packedFile.buffer = packedFile.map(INITIAL_CAPACITY);
+            } catch (IOException e) {
+                packedFile.close();
+                throw e;
+            }
+            packedFile.buffer.putInt(0, VERSION);
+            packedFile.buffer.putInt(4, thumbnailSize);
+            packedFile.thumbnailSize = thumbnailSize;
+            packedFile.length = HEADER_SIZE;
+            return packedFile;
+        }
+
+        private MappedByteBuffer map(long capacity) throws IOException {
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+
+        //only touches the record headers;
+        //returns false, if the file can't be used for thumbnails of the given size
+        private boolean readIndex(int minThumbnailSize) throws IOException {
+            long fileLength = randomAccessFile.length();
+            if (fileLength < HEADER_SIZE || fileLength > MAX_CAPACITY) {
+                return false;
+            }
+            buffer = map(fileLength);
+            if (buffer.getInt(0) != VERSION || buffer.getInt(4) < minThumbnailSize) {
+                return false;
+            }
+            thumbnailSize = buffer.getInt(4);
+
+            int capacity = buffer.capacity();
+            int position = HEADER_SIZE;
+            boolean corrupt = false;
+            while (position + RECORD_HEADER_SIZE <= capacity) {
+                int thumbnailLength = buffer.getInt(position + 16);
+                if (thumbnailLength == 0) {
+                    //end of the records
+                    break;
+                }
+                if (thumbnailLength != NO_THUMBNAIL && (thumbnailLength < 0
+                        || thumbnailLength > MAX_THUMBNAIL_BYTES
+                        || thumbnailLength > capacity - position - RECORD_HEADER_SIZE)) {
+                    corrupt = true;
+                    break;
+                }
+                Integer oldPosition = index.put(buffer.getLong(position), position);
+                if (oldPosition != null) {
+                    deadBytes += getRecordLength(oldPosition);
+                }
+                position += getRecordLength(position);
+            }
+            length = position;
+
+            if (corrupt) {
+                //e.g. a partially written page; cleared, so appended records are read back correctly
+                for (int i = length; i < capacity; i++) {
+                    buffer.put(i, (byte) 0);
+                }
+            }
+            return true;
+        }
+
+        private int getRecordLength(int position) {
+            return RECORD_HEADER_SIZE + Math.max(0, buffer.getInt(position + 16));
+        }
+
+        //writes a new file with only the newest records
+        private PackedFile compact() throws IOException {
+            File tempFile = new File(file.getPath() + ".tmp");
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            PackedFile packedFile = create(tempFile, thumbnailSize);
+            for (Map.Entry<Long, Integer> entry : index.entrySet()) {
+                int position = entry.getValue();
+                long lastModified = buffer.getLong(position + 8);
+                byte[] thumbnail = read(position);
+                if (thumbnail != null) {
+                    packedFile.put(entry.getKey(), lastModified, thumbnail);
+                } else {
+                    packedFile.putNoThumbnail(entry.getKey(), lastModified);
+                }
+            }
+            if (!tempFile.renameTo(file)) {
+                packedFile.close();
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+                throw new IOException("Couldn't replace " + file.getPath());
+            }
+            close();
+            packedFile.file = file;
+            return packedFile;
+        }
+
+        File getFile() {
+            return file;
+        }
+
+        int getThumbnailSize() {
+            return thumbnailSize;
+        }
+
+        //mapped bytes, 0 once closed
+        synchronized int getCapacity() {
+            return buffer != null ? buffer.capacity() : 0;
+        }
+
+        //number of thumbnails
+        int size() {
+            return index.size();
+        }
+
+        //copy of the jpeg; null for a NO_THUMBNAIL record
+        private byte[] read(int position) {
+            int thumbnailLength = buffer.getInt(position + 16);
+            if (thumbnailLength == NO_THUMBNAIL) {
+                return null;
+            }
+            ByteBuffer duplicate = buffer.duplicate();
+            duplicate.position(position + RECORD_HEADER_SIZE);
+            byte[] thumbnail = new byte[thumbnailLength];
+            duplicate.get(thumbnail);
+            return thumbnail;
+        }
+
+        //returns a copy of the jpeg, an empty buffer if no thumbnail could be created for this lastModified,
+        //or null if there is none
+        synchronized ByteBuffer get(long pathHash, long lastModified) {
+            Integer position = index.get(pathHash);
+            if (position == null || buffer == null) {
+                return null;
+            }
+            if (buffer.getLong(position + 8) != lastModified) {
+                //file changed since the thumbnail was created
+                return null;
+            }
+            byte[] thumbnail = read(position);
+            return thumbnail != null ? ByteBuffer.wrap(thumbnail) : ByteBuffer.allocate(0);
+        }
+
+        synchronized void put(long pathHash, long lastModified, byte[] thumbnail) {
+            if (thumbnail.length == 0 || thumbnail.length > MAX_THUMBNAIL_BYTES) {
+                return;
+            }
+            append(pathHash, lastModified, thumbnail.length, thumbnail);
+        }
+
+        //no thumbnail could be created for this lastModified
+        synchronized void putNoThumbnail(long pathHash, long lastModified) {
+            append(pathHash, lastModified, NO_THUMBNAIL, null);
+        }
+
+        private void append(long pathHash, long lastModified, int thumbnailLength, byte[] thumbnail) {
+            if (randomAccessFile == null) {
+                return;
+            }
+            int position = length;
+            int recordLength = RECORD_HEADER_SIZE + (thumbnail != null ? thumbnail.length : 0);
+            try {
+                ensureCapacity(position + recordLength);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+
+            buffer.putLong(position, pathHash);
+            buffer.putLong(position + 8, lastModified);
+            if (thumbnail != null) {
+                ByteBuffer duplicate = buffer.duplicate();
+                duplicate.position(position + RECORD_HEADER_SIZE);
+                duplicate.put(thumbnail);
+            }
+            //length last: a record, that was only partially written, ends the records
+            buffer.putInt(position + 16, thumbnailLength);
+
+            length += recordLength;
+            Integer oldPosition = index.put(pathHash, position);
+            if (oldPosition != null) {
+                deadBytes += getRecordLength(oldPosition);
+            }
+        }
+
+        //grows the file by doubling it, so it's only remapped a few times
+        private void ensureCapacity(int capacity) throws IOException {
+            if (capacity <= buffer.capacity()) {
+                return;
+            }
+            long newCapacity = buffer.capacity();
+            while (newCapacity < capacity) {
+                newCapacity *= 2;
+            }
+            if (newCapacity > MAX_CAPACITY) {
+                throw new IOException("Too many thumbnails in " + file.getPath());
+            }
+            randomAccessFile.setLength(newCapacity);
+            MappedByteBuffer oldBuffer = buffer;
+            buffer = map(newCapacity);
+            unmap(oldBuffer);
+        }
+
+        synchronized void close() {
+            if (buffer != null) {
+                unmap(buffer);
+                buffer = null;
+            }
+            if (randomAccessFile == null) {
+                return;
+            }
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            randomAccessFile = null;
+        }
+
+        //releases the mapping right away, instead of once the buffer is garbage collected;
+        //the buffer must not be used afterwards (no reader keeps a view of it)
+        private static void unmap(MappedByteBuffer buffer) {
+            try {
+                //android
+                Class.forName("java.nio.NioUtils")
+                        .getMethod("freeDirectBuffer", ByteBuffer.class)
+                        .invoke(null, buffer);
+                return;
+            } catch (Exception e) {
+                //not on android
+            }
+            try {
+                //jvm (9+), e.g. the unit tests
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+                unsafeField.setAccessible(true);
+                unsafeClass.getMethod("invokeCleaner", ByteBuffer.class)
+                        .invoke(unsafeField.get(null), buffer);
+            } catch (Exception e) {
+                //left to the garbage collector
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package us.koller.cameraroll.util;
+
+import android.content.Context;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.signature.ObjectKey;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+//loads grid thumbnails from the ThumbnailCache with Glide;
+//the Thumbnail (path & lastModified) is the model, so decoded thumbnails are kept in Glide's memory cache
+public class ThumbnailLoader implements ModelLoader<ThumbnailCache.Thumbnail, ByteBuffer> {
+
+    private Context context;
+
+    private ThumbnailLoader(Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public LoadData<ByteBuffer> buildLoadData(ThumbnailCache.Thumbnail thumbnail,
+                                              int width, int height, Options options) {
+        return new LoadData<>(new ObjectKey(thumbnail), new Fetcher(context, thumbnail));
+    }
+
+    @Override
+    public boolean handles(ThumbnailCache.Thumbnail thumbnail) {
+        return true;
+    }
+
+    private static class Fetcher implements DataFetcher<ByteBuffer> {
+
+        private Context context;
+        private ThumbnailCache.Thumbnail thumbnail;
+
+        Fetcher(Context context, ThumbnailCache.Thumbnail thumbnail) {
+            this.context = context;
+            this.thumbnail = thumbnail;
+        }
+
+        //called on one of Glide's threads
+        @Override
+        public void loadData(Priority priority, DataCallback<? super ByteBuffer> callback) {
+            ByteBuffer data = ThumbnailCache.getInstance(context).load(context, thumbnail);
+            if (data != null) {
+                callback.onDataReady(data);
+            } else {
+                callback.onLoadFailed(new IOException("Couldn't create thumbnail of " + thumbnail.getPath()));
+            }
+        }
+
+        @Override
+        public void cleanup() {
+
+        }
+
+        @Override
+        public void cancel() {
+
+        }
+
+        @Override
+        public Class<ByteBuffer> getDataClass() {
+            return ByteBuffer.class;
+        }
+
+        @Override
+        public DataSource getDataSource() {
+            return DataSource.LOCAL;
+        }
+    }
+
+    public static class Factory implements ModelLoaderFactory<ThumbnailCache.Thumbnail, ByteBuffer> {
+
+        private Context context;
+
+        public Factory(Context context) {
+            this.context = context.getApplicationContext();
+        }
+
+        @Override
+        public ModelLoader<ThumbnailCache.Thumbnail, ByteBuffer> build(MultiModelLoaderFactory multiFactory) {
+            return new ThumbnailLoader(context);
+        }
+
+        @Override
+        public void teardown() {
+
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package us.koller.cameraroll.data;
+
+import java.io.File;
+
+import us.koller.cameraroll.util.MediaType;
+
+//not a unit test: run main() with the test classpath, e.g. from the IDE;
+//measures the heap retained by a synthetic 100k item library (paths like a crawl returns them):
+//the AlbumItem layout before the shrink (name String per item, int[] dimensions),
+//the current AlbumItem (name derived from the path, file info, cached glide signature & NameKey),
+//and, as the lower bound, a columnar store (parent dir table, names in one buffer, primitive arrays).
+//retained size = used heap after a full gc, with the items held, minus the used heap without them
+public class AlbumItemHeapBenchmark {
+
+    private static final int ITEM_COUNT = 100000;
+    private static final int DIR_COUNT = 200;
+
+    //the fields of AlbumItem, as they were before the shrink
+    @SuppressWarnings("unused")
+    private static class BaselineItem {
+        private String name;
+        private String path;
+        private Object uri;
+        private long dateTaken;
+        private int[] imageDimens;
+
+        public boolean error = false;
+        public boolean isSharedElement = false;
+        public boolean hasFadedIn = false;
+
+        BaselineItem(String path) {
+            this.path = path;
+            this.name = new File(path).getName();
+            this.dateTaken = -1;
+        }
+    }
+
+    //what a columnar album store would keep per item, without any per-item object
+    @SuppressWarnings("unused")
+    private static class ColumnarStore {
+        private String[] dirs;
+        private int[] dirIndices;
+        private byte[] names;
+        private int[] nameOffsets;
+        private long[] lastModified;
+        private long[] sizes;
+        private long[] datesTaken;
+
+        ColumnarStore(String[] dirs, int count) {
+            this.dirs = dirs;
+            dirIndices = new int[count];
+            names = new byte[count * 16];
+            nameOffsets = new int[count + 1];
+            lastModified = new long[count];
+            sizes = new long[count];
+            datesTaken = new long[count];
+        }
+
+        void add(int i, int dir, String name, long lastModified, long size) {
+            dirIndices[i] = dir;
+            int offset = nameOffsets[i];
+            if (offset + name.length() > names.length) {
+                byte[] newNames = new byte[names.length * 2];
+                System.arraycopy(names, 0, newNames, 0, offset);
+                names = newNames;
+            }
+            for (int k = 0; k < name.length(); k++) {
+                names[offset + k] = (byte) name.charAt(k);
+            }
+            nameOffsets[i + 1] = offset + name.length();
+            this.lastModified[i] = lastModified;
+            sizes[i] = size;
+            datesTaken[i] = -1;
+        }
+    }
+
+    private interface Library {
+        //creates the library, returns what holds it
+        Object create(String[] dirs);
+    }
+
+    private static String name(int i) {
+        return "IMG_20170" + String.valueOf(100000 + i) + ".jpg";
+    }
+
+    //a new path String per item, like File.getPath() of the crawl
+    private static String path(String[] dirs, int i) {
+        return dirs[i % dirs.length] + "/" + name(i);
+    }
+
+    private static final Library BASELINE = new Library() {
+        @Override
+        public Object create(String[] dirs) {
+            BaselineItem[] items = new BaselineItem[ITEM_COUNT];
+            for (int i = 0; i < items.length; i++) {
+                items[i] = new BaselineItem(path(dirs, i));
+            }
+            return items;
+        }
+    };
+
+    private static final Library LOADED = new Library() {
+        @Override
+        public Object create(String[] dirs) {
+            AlbumItem[] items = new AlbumItem[ITEM_COUNT];
+            for (int i = 0; i < items.length; i++) {
+                items[i] = AlbumItem.getInstance(path(dirs, i), MediaType.Kind.IMAGE)
+                        .setFileInfo(1500000000000L + i, 2000000 + i);
+            }
+            return items;
+        }
+    };
+
+    //every item was bound once (glide signature) and sorted by name (NameKey)
+    private static final Library SHOWN_AND_SORTED = new Library() {
+        @Override
+        public Object create(String[] dirs) {
+            AlbumItem[] items = (AlbumItem[]) LOADED.create(dirs);
+            for (int i = 0; i < items.length; i++) {
+                items[i].getGlideSignature();
+                items[i].getNameKey();
+            }
+            return items;
+        }
+    };
+
+    private static final Library COLUMNAR = new Library() {
+        @Override
+        public Object create(String[] dirs) {
+            ColumnarStore store = new ColumnarStore(dirs, ITEM_COUNT);
+            for (int i = 0; i < ITEM_COUNT; i++) {
+                store.add(i, i % dirs.length, name(i), 1500000000000L + i, 2000000 + i);
+            }
+            return store;
+        }
+    };
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            long newUsed = runtime.totalMemory() - runtime.freeMemory();
+            if (newUsed == used) {
+                break;
+            }
+            used = newUsed;
+        }
+        return used;
+    }
+
+    //retained bytes per item
+    private static long measure(Library library, String[] dirs) {
+        //warm up, so the classes & caches are loaded before measuring
+        library.create(dirs);
+
+        long before = usedHeap();
+        Object holder = library.create(dirs);
+        long after = usedHeap();
+        if (holder.hashCode() == 0) {
+            System.out.println();
+        }
+        return (after - before) / ITEM_COUNT;
+    }
+
+    public static void main(String[] args) {
+        String[] dirs = new String[DIR_COUNT];
+        for (int i = 0; i < dirs.length; i++) {
+            dirs[i] = "/storage/emulated/0/DCIM/Album" + String.valueOf(i);
+        }
+
+        System.out.println(String.valueOf(ITEM_COUNT) + " items, e.g. " + path(dirs, 0));
+        System.out.println("retained bytes per item:");
+        System.out.println("before the shrink: " + String.valueOf(measure(BASELINE, dirs)));
+        System.out.println("AlbumItem, loaded: " + String.valueOf(measure(LOADED, dirs)));
+        System.out.println("AlbumItem, bound & sorted by name: "
+                + String.valueOf(measure(SHOWN_AND_SORTED, dirs)));
+        System.out.println("columnar store: " + String.valueOf(measure(COLUMNAR, dirs)));
+    }
+}
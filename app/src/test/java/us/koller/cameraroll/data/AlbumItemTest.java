@@ -0,0 +1,51 @@
+package us.koller.cameraroll.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AlbumItemTest {
+
+    @Test
+    public void instanceByExtension() {
+        assertTrue(AlbumItem.getInstance("/DCIM/Camera/IMG_1.jpg") instanceof Photo);
+        assertTrue(AlbumItem.getInstance("/DCIM/Camera/IMG_1.JPEG") instanceof Photo);
+        assertTrue(AlbumItem.getInstance("/Pictures/animation.gif") instanceof Gif);
+        assertTrue(AlbumItem.getInstance("/DCIM/Camera/VID_1.mp4") instanceof Video);
+        assertTrue(AlbumItem.getInstance("/DCIM/Camera/IMG_1.dng") instanceof RAWImage);
+
+        assertNull(AlbumItem.getInstance("/Documents/notes.txt"));
+        assertNull(AlbumItem.getInstance("/DCIM/Camera"));
+        assertNull(AlbumItem.getInstance((String) null));
+    }
+
+    @Test
+    public void nameIsDerivedFromThePath() {
+        assertEquals("IMG_1.jpg", AlbumItem.getInstance("/DCIM/Camera/IMG_1.jpg").getName());
+        assertEquals("IMG_1.jpg", AlbumItem.getInstance("IMG_1.jpg").getName());
+        assertEquals("my photo.png", AlbumItem.getInstance("/a/b.c/my photo.png").getName());
+    }
+
+    @Test
+    public void explicitNameWins() {
+        //items of content uris have no path to derive the name from
+        AlbumItem albumItem = AlbumItem.getInstance("/DCIM/Camera/IMG_1.jpg");
+        albumItem.setName("shared.jpg");
+        assertEquals("shared.jpg", albumItem.getName());
+        assertEquals("/DCIM/Camera/IMG_1.jpg", albumItem.getPath());
+    }
+
+    @Test
+    public void dateFallsBackToLastModified() {
+        AlbumItem albumItem = AlbumItem.getInstance("/DCIM/Camera/IMG_1.jpg");
+        albumItem.setFileInfo(1000, 20);
+        assertEquals(-1, albumItem.getDateTaken());
+        assertEquals(1000, albumItem.getDate());
+        assertEquals(20, albumItem.getSize());
+
+        albumItem.setDate(500);
+        assertEquals(500, albumItem.getDate());
+    }
+}
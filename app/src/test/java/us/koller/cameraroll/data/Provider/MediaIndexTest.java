@@ -0,0 +1,96 @@
+package us.koller.cameraroll.data.Provider;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MediaIndexTest {
+
+    private static MediaIndex createIndex(boolean additionalFileTypes) {
+        MediaIndex index = new MediaIndex("test_index", additionalFileTypes);
+        index.startCrawl();
+
+        MediaIndex.Dir camera = new MediaIndex.Dir("/storage/emulated/0/DCIM/Camera", 1000, 5000);
+        camera.addItem("IMG_1.jpg", 2048, 900);
+        camera.addItem("VID_\u00FC.mp4", 1 << 30, 950);
+        index.putDir(camera);
+
+        MediaIndex.Dir dcim = new MediaIndex.Dir("/storage/emulated/0/DCIM", 800, 5000);
+        dcim.addSubDir(new File("/storage/emulated/0/DCIM/Camera"));
+        dcim.setNoMedia(true);
+        index.putDir(dcim);
+        return index;
+    }
+
+    private static byte[] write(MediaIndex index) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream os = new DataOutputStream(bytes);
+        index.write(os);
+        os.close();
+        return bytes.toByteArray();
+    }
+
+    private static void read(MediaIndex index, byte[] bytes) throws IOException {
+        index.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        byte[] bytes = write(createIndex(false));
+
+        MediaIndex index = new MediaIndex("test_index", false);
+        read(index, bytes);
+        assertFalse(index.isEmpty());
+        //same dirs, items and flags
+        assertArrayEquals(bytes, write(index));
+    }
+
+    @Test
+    public void indexOfOtherFileTypesIsDropped() throws IOException {
+        byte[] bytes = write(createIndex(true));
+
+        MediaIndex index = new MediaIndex("test_index", false);
+        read(index, bytes);
+        assertTrue(index.isEmpty());
+
+        index = new MediaIndex("test_index", true);
+        read(index, bytes);
+        assertFalse(index.isEmpty());
+    }
+
+    @Test
+    public void indexOfOtherVersionIsDropped() throws IOException {
+        byte[] bytes = write(createIndex(false));
+        //version is the first int
+        bytes[3]--;
+
+        MediaIndex index = new MediaIndex("test_index", false);
+        read(index, bytes);
+        assertTrue(index.isEmpty());
+    }
+
+    @Test
+    public void truncatedIndex() throws IOException {
+        byte[] bytes = write(createIndex(false));
+
+        MediaIndex index = new MediaIndex("test_index", false);
+        try {
+            read(index, Arrays.copyOf(bytes, bytes.length - 4));
+            fail();
+        } catch (EOFException e) {
+            //load() drops the index
+        }
+    }
+}
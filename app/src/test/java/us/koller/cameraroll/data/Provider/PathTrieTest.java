@@ -0,0 +1,65 @@
+package us.koller.cameraroll.data.Provider;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PathTrieTest {
+
+    @Test
+    public void matchesDirsAndTheirSubDirs() {
+        PathTrie trie = new PathTrie(Arrays.asList(
+                "/storage/emulated/0/Android", "/storage/emulated/0/Music"));
+
+        assertTrue(trie.matches("/storage/emulated/0/Android"));
+        assertTrue(trie.matches("/storage/emulated/0/Android/data/com.example"));
+        assertTrue(trie.matches("/storage/emulated/0/Music/Album"));
+    }
+
+    @Test
+    public void doesNotMatchPrefixesOfSegments() {
+        PathTrie trie = new PathTrie(Arrays.asList("/storage/emulated/0/Android"));
+
+        assertFalse(trie.matches("/storage/emulated/0/AndroidBackup"));
+        assertFalse(trie.matches("/storage/emulated/0/Androi"));
+        assertFalse(trie.matches("/storage/emulated/0"));
+        assertFalse(trie.matches("/storage/emulated/0/DCIM"));
+    }
+
+    @Test
+    public void ignoresEmptySegments() {
+        PathTrie trie = new PathTrie(Arrays.asList("/storage//emulated/0/DCIM/"));
+
+        assertTrue(trie.matches("/storage/emulated/0/DCIM"));
+        assertTrue(trie.matches("//storage/emulated/0/DCIM/Camera/"));
+    }
+
+    @Test
+    public void siblingsWithSharedParent() {
+        ArrayList<String> paths = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            paths.add("/storage/emulated/0/dir" + i);
+        }
+        PathTrie trie = new PathTrie(paths);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(trie.matches("/storage/emulated/0/dir" + i + "/file.jpg"));
+        }
+        assertFalse(trie.matches("/storage/emulated/0/dir100"));
+    }
+
+    @Test
+    public void emptyAndNullPaths() {
+        PathTrie trie = new PathTrie(null);
+        assertFalse(trie.matches("/storage/emulated/0"));
+
+        trie = new PathTrie(Arrays.asList("", null, "/a"));
+        assertFalse(trie.matches(null));
+        assertFalse(trie.matches("/b"));
+        assertTrue(trie.matches("/a/b"));
+    }
+}
@@ -0,0 +1,48 @@
+package us.koller.cameraroll.data.Provider.Retriever;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BucketAggregateTest {
+
+    @Test
+    public void aggregatesRowsOfOneBucket() {
+        MediaStoreRetriever.BucketAggregate aggregate = new MediaStoreRetriever.BucketAggregate();
+        assertNull(aggregate.coverPath);
+
+        assertTrue(aggregate.add(7, "/DCIM/Camera/newest.jpg", 100));
+        assertTrue(aggregate.add(7, "/DCIM/Camera/older.jpg", 200));
+        assertTrue(aggregate.add(7, "/DCIM/Camera/oldest.mp4", 300));
+
+        assertEquals(7, aggregate.bucket);
+        assertEquals("/DCIM/Camera/newest.jpg", aggregate.coverPath);
+        assertEquals(3, aggregate.count);
+        assertEquals(600, aggregate.totalBytes);
+    }
+
+    @Test
+    public void rowOfAnotherBucketCompletesTheAggregate() {
+        MediaStoreRetriever.BucketAggregate aggregate = new MediaStoreRetriever.BucketAggregate();
+        aggregate.add(1, "/a/1.jpg", 10);
+        aggregate.add(1, "/a/2.jpg", 20);
+
+        assertFalse(aggregate.add(2, "/b/1.jpg", 30));
+        //the rejected row isn't counted
+        assertEquals(1, aggregate.bucket);
+        assertEquals(2, aggregate.count);
+        assertEquals(30, aggregate.totalBytes);
+    }
+
+    @Test
+    public void firstRowStartsAnyBucket() {
+        MediaStoreRetriever.BucketAggregate aggregate = new MediaStoreRetriever.BucketAggregate();
+        //bucket ids aren't necessarily positive
+        assertTrue(aggregate.add(-1, "/a/1.jpg", 10));
+        assertEquals(-1, aggregate.bucket);
+        assertEquals(1, aggregate.count);
+    }
+}
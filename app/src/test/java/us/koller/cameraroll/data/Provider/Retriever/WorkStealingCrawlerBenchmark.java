@@ -0,0 +1,253 @@
+package us.koller.cameraroll.data.Provider.Retriever;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import us.koller.cameraroll.util.MediaType;
+
+//not a unit test: run main() with the test classpath, e.g. from the IDE;
+//times crawling a skewed temp-dir tree (like a real storage: one huge Android/ subtree,
+//a DCIM folder with a lot of files, and a lot of small top-level dirs):
+//a single recursive thread, the old 16 threads with the top-level dirs divided up front (divideDirs()),
+//and the WorkStealingCrawler with 1 to 16 workers.
+//every dir is listed, every file is classified and its date & size are read, like the ItemLoaders do;
+//optionally every listFiles() waits some microseconds on top (args[0]), to simulate a slow (FUSE / sd card) storage
+public class WorkStealingCrawlerBenchmark {
+
+    private static final int OLD_THREAD_COUNT = 16;
+    private static final int[] WORKER_COUNTS = {1, 2, 4, 8, 16};
+    private static final int WARMUP_RUNS = 2;
+    private static final int RUNS = 5;
+
+    private static long listLatencyNanos = 0;
+
+    private interface Crawl {
+        //returns the number of media files found
+        int crawl(File[] dirs) throws InterruptedException;
+    }
+
+    private static File[] listFiles(File dir) {
+        if (listLatencyNanos > 0) {
+            LockSupport.parkNanos(listLatencyNanos);
+        }
+        return dir.listFiles();
+    }
+
+    //the work per file, returns 1 for media
+    private static int onFile(File file) {
+        if (MediaType.getKind(file.getPath()) != MediaType.Kind.NONE) {
+            if (file.lastModified() + file.length() != 0) {
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    private static int searchRecursively(File dir) {
+        int media = 0;
+        File[] files = listFiles(dir);
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                if (files[i].isDirectory()) {
+                    media += searchRecursively(files[i]);
+                } else {
+                    media += onFile(files[i]);
+                }
+            }
+        }
+        return media;
+    }
+
+    private static final Crawl SINGLE_THREAD = new Crawl() {
+        @Override
+        public int crawl(File[] dirs) {
+            int media = 0;
+            for (int i = 0; i < dirs.length; i++) {
+                media += searchRecursively(dirs[i]);
+            }
+            return media;
+        }
+    };
+
+    //the old StorageRetriever: the top-level dirs divided onto 16 threads, each searching its dirs recursively
+    private static final Crawl DIVIDED_DIRS = new Crawl() {
+        @Override
+        public int crawl(File[] dirs) throws InterruptedException {
+            final AtomicInteger media = new AtomicInteger(0);
+            Thread[] threads = new Thread[OLD_THREAD_COUNT];
+            int index = 0;
+            int rest = dirs.length % OLD_THREAD_COUNT;
+            for (int i = 0; i < threads.length; i++) {
+                int size = dirs.length / OLD_THREAD_COUNT;
+                if (rest > 0) {
+                    size++;
+                    rest--;
+                }
+                final File[] threadDirs = Arrays.copyOfRange(dirs, index, index + size);
+                index += size;
+                threads[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        int count = 0;
+                        for (int k = 0; k < threadDirs.length; k++) {
+                            count += searchRecursively(threadDirs[k]);
+                        }
+                        media.addAndGet(count);
+                    }
+                };
+                threads[i].start();
+            }
+            for (int i = 0; i < threads.length; i++) {
+                threads[i].join();
+            }
+            return media.get();
+        }
+    };
+
+    private static Crawl workStealing(final int workerCount) {
+        return new Crawl() {
+            @Override
+            public int crawl(File[] dirs) throws InterruptedException {
+                final AtomicInteger media = new AtomicInteger(0);
+                final CountDownLatch done = new CountDownLatch(1);
+                WorkStealingCrawler crawler = new WorkStealingCrawler() {
+                    @Override
+                    void searchDir(int worker, File dir) {
+                        int count = 0;
+                        File[] files = listFiles(dir);
+                        if (files != null) {
+                            for (int i = 0; i < files.length; i++) {
+                                if (files[i].isDirectory()) {
+                                    push(worker, files[i]);
+                                } else {
+                                    count += onFile(files[i]);
+                                }
+                            }
+                        }
+                        media.addAndGet(count);
+                    }
+
+                    @Override
+                    void onWorkersDone() {
+                        done.countDown();
+                    }
+
+                    @Override
+                    boolean isCancelled() {
+                        return false;
+                    }
+                };
+                crawler.crawl(dirs, workerCount);
+                done.await();
+                return media.get();
+            }
+        };
+    }
+
+    private static File createTree() throws IOException {
+        File root = File.createTempFile("storage", "");
+        //noinspection ResultOfMethodCallIgnored
+        root.delete();
+        mkdir(root);
+
+        //Android/data/<app>/cache/<n>: lots of dirs, hardly any media
+        File data = mkdir(new File(new File(root, "Android"), "data"));
+        for (int i = 0; i < 300; i++) {
+            File app = mkdir(new File(data, "com.app" + String.valueOf(i)));
+            for (int k = 0; k < 4; k++) {
+                File cache = mkdir(new File(new File(app, "cache"), String.valueOf(k)));
+                createFiles(cache, "file_%d.tmp", 3);
+            }
+        }
+
+        //DCIM: a few dirs, a lot of media
+        File dcim = mkdir(new File(root, "DCIM"));
+        createFiles(mkdir(new File(dcim, "Camera")), "IMG_%d.jpg", 6000);
+        createFiles(mkdir(new File(dcim, "Screenshots")), "Screenshot_%d.png", 1500);
+
+        //a lot of small top-level dirs
+        for (int i = 0; i < 40; i++) {
+            File dir = mkdir(new File(root, "dir" + String.valueOf(i)));
+            createFiles(dir, "IMG_%d.jpg", 10);
+            createFiles(mkdir(new File(dir, "sub")), "notes_%d.txt", 5);
+        }
+        return root;
+    }
+
+    private static File mkdir(File dir) throws IOException {
+        if (!dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Couldn't create " + dir.getPath());
+        }
+        return dir;
+    }
+
+    private static void createFiles(File dir, String name, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            File file = new File(dir, name.replace("%d", String.valueOf(i)));
+            if (!file.createNewFile()) {
+                throw new IOException("Couldn't create " + file.getPath());
+            }
+        }
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                delete(files[i]);
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    //median of the runs, in ms
+    private static long time(Crawl crawl, File[] dirs, int expected) throws InterruptedException {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            crawl.crawl(dirs);
+        }
+        long[] times = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long startTime = System.nanoTime();
+            int media = crawl.crawl(dirs);
+            times[i] = (System.nanoTime() - startTime) / 1000000;
+            //all of them have to find the same media
+            if (media != expected) {
+                throw new IllegalStateException("Found " + String.valueOf(media)
+                        + " instead of " + String.valueOf(expected) + " media");
+            }
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2];
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            listLatencyNanos = Long.parseLong(args[0]) * 1000L;
+        }
+
+        File root = createTree();
+        try {
+            File[] dirs = root.listFiles();
+            int media = SINGLE_THREAD.crawl(dirs);
+
+            System.out.println("processors: " + String.valueOf(Runtime.getRuntime().availableProcessors())
+                    + ", listFiles() latency: " + String.valueOf(listLatencyNanos / 1000L) + " us");
+            System.out.println(String.valueOf(dirs.length) + " top-level dirs, "
+                    + String.valueOf(media) + " media");
+            System.out.println("single thread: " + String.valueOf(time(SINGLE_THREAD, dirs, media)) + " ms");
+            System.out.println("divided dirs (" + String.valueOf(OLD_THREAD_COUNT) + " threads): "
+                    + String.valueOf(time(DIVIDED_DIRS, dirs, media)) + " ms");
+            for (int i = 0; i < WORKER_COUNTS.length; i++) {
+                System.out.println("work stealing (" + String.valueOf(WORKER_COUNTS[i]) + " workers): "
+                        + String.valueOf(time(workStealing(WORKER_COUNTS[i]), dirs, media)) + " ms");
+            }
+        } finally {
+            delete(root);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package us.koller.cameraroll.data.Provider.Retriever;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WorkStealingCrawlerTest {
+
+    private File root;
+
+    //lists the dirs and counts, how often each one was searched
+    private static class CountingCrawler extends WorkStealingCrawler {
+
+        final ConcurrentHashMap<String, AtomicInteger> searched = new ConcurrentHashMap<>();
+        final AtomicInteger doneCalls = new AtomicInteger(0);
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile boolean cancelled = false;
+
+        @Override
+        void searchDir(int worker, File dir) {
+            AtomicInteger count = new AtomicInteger(0);
+            AtomicInteger previous = searched.putIfAbsent(dir.getPath(), count);
+            (previous != null ? previous : count).incrementAndGet();
+
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (int i = 0; i < files.length; i++) {
+                    if (files[i].isDirectory()) {
+                        push(worker, files[i]);
+                    }
+                }
+            }
+        }
+
+        @Override
+        void onWorkersDone() {
+            doneCalls.incrementAndGet();
+            done.countDown();
+        }
+
+        @Override
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        root = File.createTempFile("crawl", "");
+        //noinspection ResultOfMethodCallIgnored
+        root.delete();
+        assertTrue(root.mkdir());
+    }
+
+    @After
+    public void tearDown() {
+        delete(root);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                delete(files[i]);
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    //a deep, skewed tree: one big subtree & a few small ones; returns all its dirs
+    private HashSet<String> createTree() throws IOException {
+        HashSet<String> dirs = new HashSet<>();
+        File dcim = mkdir(root, "DCIM", dirs);
+        for (int i = 0; i < 20; i++) {
+            File dir = mkdir(dcim, "dir" + String.valueOf(i), dirs);
+            for (int k = 0; k < 5; k++) {
+                File subDir = mkdir(dir, "sub" + String.valueOf(k), dirs);
+                assertTrue(new File(subDir, "IMG_1.jpg").createNewFile());
+            }
+        }
+        for (int i = 0; i < 5; i++) {
+            mkdir(root, "small" + String.valueOf(i), dirs);
+        }
+        return dirs;
+    }
+
+    private static File mkdir(File parent, String name, HashSet<String> dirs) {
+        File dir = new File(parent, name);
+        assertTrue(dir.mkdir());
+        dirs.add(dir.getPath());
+        return dir;
+    }
+
+    @Test
+    public void crawl_searchesEveryDirOnce() throws Exception {
+        HashSet<String> dirs = createTree();
+
+        CountingCrawler crawler = new CountingCrawler();
+        crawler.crawl(root.listFiles(), 4);
+        crawler.await();
+
+        assertEquals(dirs, new HashSet<>(crawler.searched.keySet()));
+        for (AtomicInteger count : crawler.searched.values()) {
+            assertEquals(1, count.get());
+        }
+        //give late workers the chance to call it again
+        Thread.sleep(100);
+        assertEquals(1, crawler.doneCalls.get());
+    }
+
+    @Test
+    public void crawl_moreWorkersThanDirs() throws Exception {
+        HashSet<String> dirs = createTree();
+
+        CountingCrawler crawler = new CountingCrawler();
+        crawler.crawl(new File[]{new File(root, "DCIM")}, 8);
+        crawler.await();
+
+        dirs.removeAll(crawler.searched.keySet());
+        //only the small dirs beside DCIM are left
+        assertEquals(5, dirs.size());
+    }
+
+    @Test
+    public void crawl_noDirs_isDoneRightAway() throws Exception {
+        CountingCrawler crawler = new CountingCrawler();
+        crawler.crawl(new File[0], 4);
+
+        assertEquals(1, crawler.doneCalls.get());
+        assertEquals(0, crawler.searched.size());
+    }
+
+    @Test
+    public void crawl_cancelled_stopsTheWorkers() throws Exception {
+        createTree();
+
+        CountingCrawler crawler = new CountingCrawler();
+        crawler.cancelled = true;
+        crawler.crawl(root.listFiles(), 4);
+        crawler.await();
+
+        assertEquals(0, crawler.searched.size());
+        assertEquals(1, crawler.doneCalls.get());
+    }
+}
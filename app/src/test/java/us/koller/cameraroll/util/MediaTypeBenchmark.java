@@ -0,0 +1,122 @@
+package us.koller.cameraroll.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+//not a unit test: run main() with the test classpath, e.g. from the IDE;
+//times classifying a million paths (like a crawl of a big storage):
+//the open addressing extension table against the endsWith() chain it replaced
+public class MediaTypeBenchmark {
+
+    private static final int PATH_COUNT = 1000000;
+    private static final int WARMUP_RUNS = 3;
+    private static final int RUNS = 7;
+
+    //the endsWith() chain, as it was before the extension table
+    private static class EndsWithChain {
+        private static String[] imageExtensions = {"jpg", "png", "jpe", "jpeg", "bmp"};
+        private static String[] videoExtensions = {"mp4", "mkv", "webm", "avi"};
+        private static String[] gifExtension = {"gif"};
+        private static String[] rawExtension = {"dng"};
+
+        //same order as AlbumItem.getInstance() used to check them
+        static MediaType.Kind getKind(String path) {
+            if (checkExtension(path, rawExtension)) {
+                return MediaType.Kind.RAW;
+            } else if (checkExtension(path, gifExtension)) {
+                return MediaType.Kind.GIF;
+            } else if (checkExtension(path, imageExtensions)) {
+                return MediaType.Kind.IMAGE;
+            } else if (checkExtension(path, videoExtensions)) {
+                return MediaType.Kind.VIDEO;
+            }
+            return MediaType.Kind.NONE;
+        }
+
+        private static boolean checkExtension(String path, String[] extensions) {
+            for (int i = 0; i < extensions.length; i++) {
+                if (path.toLowerCase().endsWith(extensions[i])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private interface Classifier {
+        MediaType.Kind getKind(String path);
+    }
+
+    private static final Classifier EXTENSION_TABLE = new Classifier() {
+        @Override
+        public MediaType.Kind getKind(String path) {
+            return MediaType.getKind(path);
+        }
+    };
+
+    private static final Classifier ENDS_WITH_CHAIN = new Classifier() {
+        @Override
+        public MediaType.Kind getKind(String path) {
+            return EndsWithChain.getKind(path);
+        }
+    };
+
+    //mostly media, like a DCIM folder; some other files, upper-case extensions & files without one
+    private static String[] createPaths(int count) {
+        String[] names = {"IMG_%d.jpg", "IMG_%d.JPG", "Screenshot_%d.png", "VID_%d.mp4", "%d.gif",
+                "IMG_%d.dng", "clip_%d.webm", "notes_%d.txt", "backup_%d.zip", "README_%d"};
+        String[] dirs = {"/storage/emulated/0/DCIM/Camera/", "/storage/emulated/0/Pictures/Screenshots/",
+                "/storage/emulated/0/Download/", "/storage/emulated/0/WhatsApp/Media/WhatsApp Images/"};
+        Random random = new Random(0);
+        String[] paths = new String[count];
+        for (int i = 0; i < count; i++) {
+            String name = names[random.nextInt(names.length)].replace("%d", String.valueOf(i));
+            paths[i] = dirs[random.nextInt(dirs.length)] + name;
+        }
+        return paths;
+    }
+
+    //median of the runs, in ms
+    private static long time(Classifier classifier, String[] paths) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            classify(classifier, paths);
+        }
+        long[] times = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long startTime = System.nanoTime();
+            classify(classifier, paths);
+            times[i] = (System.nanoTime() - startTime) / 1000000;
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2];
+    }
+
+    //returns the number of media files, so the work can't be optimized away
+    private static int classify(Classifier classifier, String[] paths) {
+        int media = 0;
+        for (int i = 0; i < paths.length; i++) {
+            if (classifier.getKind(paths[i]) != MediaType.Kind.NONE) {
+                media++;
+            }
+        }
+        return media;
+    }
+
+    public static void main(String[] args) {
+        //default extensions only: the chain doesn't know the additional ones
+        MediaType.useAdditionalFileTypes(false);
+        String[] paths = createPaths(PATH_COUNT);
+
+        //both have to agree
+        for (int i = 0; i < paths.length; i++) {
+            if (EXTENSION_TABLE.getKind(paths[i]) != ENDS_WITH_CHAIN.getKind(paths[i])) {
+                throw new IllegalStateException("Different kind of " + paths[i]);
+            }
+        }
+
+        System.out.println(String.valueOf(PATH_COUNT) + " paths, "
+                + String.valueOf(classify(EXTENSION_TABLE, paths)) + " media");
+        System.out.println("extension table: " + String.valueOf(time(EXTENSION_TABLE, paths)) + " ms");
+        System.out.println("endsWith() chain: " + String.valueOf(time(ENDS_WITH_CHAIN, paths)) + " ms");
+    }
+}
@@ -0,0 +1,116 @@
+package us.koller.cameraroll.util;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+
+public class MediaTypeDetectorTest {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    private static MediaType.Kind getKind(byte[] header) {
+        return MediaTypeDetector.getKind(header, header.length);
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    private static byte[] ftyp(String brand) {
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        buffer.putInt(24).put("ftyp".getBytes(US_ASCII)).put(brand.getBytes(US_ASCII));
+        return buffer.array();
+    }
+
+    //TIFF header, with the first IFD right behind it
+    private static byte[] tiff(ByteOrder order, int... tags) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 2 + tags.length * 12 + 4).order(order);
+        if (order == ByteOrder.LITTLE_ENDIAN) {
+            buffer.put((byte) 'I').put((byte) 'I');
+        } else {
+            buffer.put((byte) 'M').put((byte) 'M');
+        }
+        buffer.putShort((short) 42).putInt(8);
+        buffer.putShort((short) tags.length);
+        for (int tag : tags) {
+            //tag, type (SHORT), count, value
+            buffer.putShort((short) tag).putShort((short) 3).putInt(1).putInt(0);
+        }
+        return buffer.array();
+    }
+
+    @Test
+    public void images() {
+        assertEquals(MediaType.Kind.IMAGE, getKind(bytes(0xFF, 0xD8, 0xFF, 0xE1)));
+        assertEquals(MediaType.Kind.IMAGE, getKind(bytes(0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n')));
+        assertEquals(MediaType.Kind.IMAGE,
+                getKind(bytes('R', 'I', 'F', 'F', 0, 0, 0, 0, 'W', 'E', 'B', 'P')));
+        assertEquals(MediaType.Kind.GIF, getKind("GIF89a".getBytes(US_ASCII)));
+    }
+
+    @Test
+    public void heifBrandsAreImages() {
+        assertEquals(MediaType.Kind.IMAGE, getKind(ftyp("heic")));
+        assertEquals(MediaType.Kind.IMAGE, getKind(ftyp("mif1")));
+    }
+
+    @Test
+    public void videoBrandsAreVideos() {
+        assertEquals(MediaType.Kind.VIDEO, getKind(ftyp("isom")));
+        assertEquals(MediaType.Kind.VIDEO, getKind(ftyp("mp42")));
+        assertEquals(MediaType.Kind.VIDEO, getKind(ftyp("qt  ")));
+        assertEquals(MediaType.Kind.VIDEO, getKind(ftyp("3gp5")));
+        assertEquals(MediaType.Kind.VIDEO, getKind(ftyp("3g2a")));
+        assertEquals(MediaType.Kind.VIDEO, getKind(bytes(0x1A, 0x45, 0xDF, 0xA3)));
+    }
+
+    @Test
+    public void unknownBrandsAreLeftToTheMimeType() {
+        assertEquals(MediaType.Kind.NONE, getKind(ftyp("avif")));
+        assertEquals(MediaType.Kind.NONE, getKind(ftyp("avis")));
+        assertEquals(MediaType.Kind.NONE, getKind(ftyp("crx ")));
+        assertEquals(MediaType.Kind.NONE, getKind(ftyp("M4A ")));
+        //brand bytes outside of ascii
+        assertEquals(MediaType.Kind.NONE,
+                getKind(bytes(0, 0, 0, 24, 'f', 't', 'y', 'p', 'h', 0xE9, 'i', 'c')));
+        //brand cut off
+        assertEquals(MediaType.Kind.NONE, MediaTypeDetector.getKind(ftyp("isom"), 10));
+    }
+
+    @Test
+    public void dngIsRaw() {
+        //DNGVersion is 0xC612
+        assertEquals(MediaType.Kind.RAW, getKind(tiff(ByteOrder.LITTLE_ENDIAN, 0x100, 0x101, 0xC612)));
+        assertEquals(MediaType.Kind.RAW, getKind(tiff(ByteOrder.BIG_ENDIAN, 0x100, 0xC612, 0xC614)));
+    }
+
+    @Test
+    public void plainTiffIsLeftToTheMimeType() {
+        assertEquals(MediaType.Kind.NONE, getKind(tiff(ByteOrder.LITTLE_ENDIAN, 0x100, 0x101, 0x8769)));
+        assertEquals(MediaType.Kind.NONE, getKind(tiff(ByteOrder.BIG_ENDIAN)));
+
+        //IFD beyond the header
+        byte[] header = tiff(ByteOrder.LITTLE_ENDIAN, 0xC612);
+        assertEquals(MediaType.Kind.NONE, MediaTypeDetector.getKind(header, 9));
+        header[4] = (byte) 0xFF;
+        header[7] = (byte) 0xFF;
+        assertEquals(MediaType.Kind.NONE, getKind(header));
+    }
+
+    @Test
+    public void unknownOrShortContent() {
+        assertEquals(MediaType.Kind.NONE, getKind(new byte[0]));
+        assertEquals(MediaType.Kind.NONE, getKind(bytes(0xFF, 0xD8)));
+        assertEquals(MediaType.Kind.NONE, getKind("plain text, not media".getBytes(US_ASCII)));
+        //only the first length bytes count
+        assertEquals(MediaType.Kind.NONE, MediaTypeDetector.getKind(bytes(0x89, 'P', 'N', 'G'), 2));
+    }
+}
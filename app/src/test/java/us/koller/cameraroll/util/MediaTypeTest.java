@@ -0,0 +1,75 @@
+package us.koller.cameraroll.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MediaTypeTest {
+
+    @After
+    public void tearDown() {
+        MediaType.useAdditionalFileTypes(false);
+    }
+
+    @Test
+    public void kindByExtension() {
+        assertEquals(MediaType.Kind.IMAGE, MediaType.getKind("/DCIM/IMG_1.jpg"));
+        assertEquals(MediaType.Kind.IMAGE, MediaType.getKind("/DCIM/IMG_1.png"));
+        assertEquals(MediaType.Kind.GIF, MediaType.getKind("/Pictures/a.gif"));
+        assertEquals(MediaType.Kind.RAW, MediaType.getKind("/DCIM/IMG_1.dng"));
+        assertEquals(MediaType.Kind.VIDEO, MediaType.getKind("/DCIM/VID_1.mp4"));
+        assertEquals(MediaType.Kind.VIDEO, MediaType.getKind("/Movies/a.webm"));
+    }
+
+    @Test
+    public void extensionsAreCaseInsensitive() {
+        assertEquals(MediaType.Kind.IMAGE, MediaType.getKind("/DCIM/IMG_1.JPG"));
+        assertEquals(MediaType.Kind.VIDEO, MediaType.getKind("/DCIM/VID_1.Mp4"));
+    }
+
+    @Test
+    public void noMediaExtension() {
+        assertEquals(MediaType.Kind.NONE, MediaType.getKind("/Documents/a.txt"));
+        assertEquals(MediaType.Kind.NONE, MediaType.getKind("/DCIM/jpg"));
+        assertEquals(MediaType.Kind.NONE, MediaType.getKind("/DCIM/a."));
+        //extension of the dir, not of the file
+        assertEquals(MediaType.Kind.NONE, MediaType.getKind("/DCIM/a.jpg/file"));
+        //longer than any extension in the table
+        assertEquals(MediaType.Kind.NONE, MediaType.getKind("/DCIM/a.jpgjpgjpgjpg"));
+        //suffix of a known extension
+        assertEquals(MediaType.Kind.NONE, MediaType.getKind("/DCIM/a.pg"));
+        assertEquals(MediaType.Kind.NONE, MediaType.getKind("/DCIM/a.j\u00E9g"));
+        assertEquals(MediaType.Kind.NONE, MediaType.getKind(null));
+        assertFalse(MediaType.isMedia(""));
+    }
+
+    @Test
+    public void additionalFileTypes() {
+        assertFalse(MediaType.isMedia("/DCIM/IMG_1.heic"));
+        assertFalse(MediaType.isMedia("/DCIM/VID_1.mov"));
+        assertFalse(MediaType.doesSupportExif("/DCIM/IMG_1.cr2"));
+
+        MediaType.useAdditionalFileTypes(true);
+        assertEquals(MediaType.Kind.IMAGE, MediaType.getKind("/DCIM/IMG_1.heic"));
+        assertEquals(MediaType.Kind.IMAGE, MediaType.getKind("/DCIM/IMG_1.webp"));
+        assertEquals(MediaType.Kind.VIDEO, MediaType.getKind("/DCIM/VID_1.3gp"));
+        assertEquals(MediaType.Kind.VIDEO, MediaType.getKind("/DCIM/VID_1.mov"));
+        assertEquals(MediaType.Kind.RAW, MediaType.getKind("/DCIM/IMG_1.nef"));
+        assertTrue(MediaType.doesSupportExif("/DCIM/IMG_1.cr2"));
+
+        MediaType.useAdditionalFileTypes(false);
+        assertFalse(MediaType.isMedia("/DCIM/IMG_1.heic"));
+    }
+
+    @Test
+    public void exifSupport() {
+        assertTrue(MediaType.doesSupportExif("/DCIM/IMG_1.jpg"));
+        assertTrue(MediaType.doesSupportExif("/DCIM/IMG_1.DNG"));
+        assertFalse(MediaType.doesSupportExif("/DCIM/IMG_1.png"));
+        assertFalse(MediaType.doesSupportExif("/DCIM/VID_1.mp4"));
+        assertFalse(MediaType.doesSupportExif(null));
+    }
+}
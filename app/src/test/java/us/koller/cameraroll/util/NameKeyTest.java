@@ -0,0 +1,79 @@
+package us.koller.cameraroll.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NameKeyTest {
+
+    private Locale defaultLocale;
+
+    @Before
+    public void setUp() {
+        defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(defaultLocale);
+    }
+
+    private static int compare(String name1, String name2) {
+        return NameKey.create(name1).compareTo(NameKey.create(name2));
+    }
+
+    @Test
+    public void digitRunsByNumericValue() {
+        assertTrue(compare("IMG_9", "IMG_10") < 0);
+        assertTrue(compare("IMG_10", "IMG_9") > 0);
+        assertTrue(compare("2", "10") < 0);
+        assertTrue(compare("IMG_0099", "IMG_100") < 0);
+        //longer than a long
+        assertTrue(compare("123456789012345678901", "123456789012345678902") < 0);
+    }
+
+    @Test
+    public void numbersBeforeText() {
+        assertTrue(compare("1", "a") < 0);
+        assertTrue(compare("a", "1") > 0);
+    }
+
+    @Test
+    public void textRunsByCollation() {
+        assertTrue(compare("apple", "Banana") < 0);
+        assertTrue(compare("\u00C9clair", "fig") < 0);
+        assertTrue(compare("abc", "abcd") < 0);
+    }
+
+    @Test
+    public void equalNaturalOrderIsStillTotal() {
+        //leading zeros, or case only
+        assertTrue(compare("01", "1") != 0);
+        assertEquals(-compare("01", "1"), compare("1", "01"));
+        assertTrue(compare("a", "A") != 0);
+        assertEquals(0, compare("IMG_1", "IMG_1"));
+    }
+
+    @Test
+    public void nullAndEmptyNames() {
+        assertEquals(0, compare(null, ""));
+        assertTrue(compare("", "a") < 0);
+    }
+
+    @Test
+    public void keyIsInvalidAfterLocaleChange() {
+        NameKey key = NameKey.create("IMG_1");
+        assertTrue(key.isValid());
+
+        Locale.setDefault(Locale.GERMANY);
+        assertFalse(key.isValid());
+        assertTrue(NameKey.create("IMG_1").isValid());
+    }
+}
@@ -0,0 +1,161 @@
+package us.koller.cameraroll.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+
+//not a unit test: run main() with the test classpath, e.g. from the IDE;
+//times sorting n items by date & by name:
+//Collections.sort() with the comparator, the key-extracted merge sort, and the merge sort split onto 2 threads
+//(only split on devices with more than one processor).
+//the NameKeys are built before the timing: every sort builds a key at most once per item,
+//so that cost is the same for all of them and would only hide the difference of the sorts
+public class SortUtilBenchmark {
+
+    private static final int[] SIZES = {10000, 50000, 100000, 1000000};
+    private static final int WARMUP_RUNS = 2;
+    private static final int RUNS = 5;
+
+    private static class Item implements SortUtil.Sortable {
+        private String name;
+        private NameKey nameKey;
+        private long date;
+
+        Item(String name, long date) {
+            this.name = name;
+            this.date = date;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public NameKey getNameKey() {
+            if (nameKey == null || !nameKey.isValid()) {
+                nameKey = NameKey.create(name);
+            }
+            return nameKey;
+        }
+
+        @Override
+        public long getDate() {
+            return date;
+        }
+
+        @Override
+        public String getPath() {
+            return "/storage/emulated/0/DCIM/Camera/" + name;
+        }
+
+        @Override
+        public boolean pinned() {
+            return false;
+        }
+    }
+
+    private interface Sorter {
+        void sort(ArrayList<Item> items, int by);
+    }
+
+    private static final Sorter COLLECTIONS_SORT = new Sorter() {
+        @Override
+        public void sort(ArrayList<Item> items, int by) {
+            Collections.sort(items, SortUtil.getComparator(by));
+        }
+    };
+
+    private static final Sorter KEY_SORT = new Sorter() {
+        @Override
+        public void sort(ArrayList<Item> items, int by) {
+            SortUtil.sortByKeys(items, by == SortUtil.BY_DATE, Integer.MAX_VALUE);
+        }
+    };
+
+    private static final Sorter PARALLEL_KEY_SORT = new Sorter() {
+        @Override
+        public void sort(ArrayList<Item> items, int by) {
+            SortUtil.sortByKeys(items, by == SortUtil.BY_DATE, 0);
+        }
+    };
+
+    //camera-like names, dates with ties (burst shots, second resolution); the NameKeys are already built
+    private static ArrayList<Item> createItems(int size, long seed) {
+        Random random = new Random(seed);
+        ArrayList<Item> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String name;
+            switch (random.nextInt(3)) {
+                case 0:
+                    name = "IMG_" + String.valueOf(random.nextInt(size * 2)) + ".jpg";
+                    break;
+                case 1:
+                    name = "VID_2017" + String.valueOf(1000 + random.nextInt(9000))
+                            + "_" + String.valueOf(random.nextInt(240000)) + ".mp4";
+                    break;
+                default:
+                    name = "Screenshot_" + String.valueOf(random.nextInt(size)) + ".png";
+                    break;
+            }
+            long date = 1500000000000L + random.nextInt(size / 2) * 1000L;
+            Item item = new Item(name, date);
+            item.getNameKey();
+            items.add(item);
+        }
+        return items;
+    }
+
+    //median of the runs, in ms
+    private static long time(Sorter sorter, int size, int by) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            sorter.sort(createItems(size, i), by);
+        }
+        long[] times = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            ArrayList<Item> items = createItems(size, WARMUP_RUNS + i);
+            long startTime = System.nanoTime();
+            sorter.sort(items, by);
+            times[i] = (System.nanoTime() - startTime) / 1000000;
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2];
+    }
+
+    //all three have to agree (same order, the sorts are stable)
+    private static void check(int size, int by) {
+        ArrayList<Item> expected = createItems(size, 0);
+        COLLECTIONS_SORT.sort(expected, by);
+        Sorter[] sorters = {KEY_SORT, PARALLEL_KEY_SORT};
+        for (int i = 0; i < sorters.length; i++) {
+            ArrayList<Item> items = createItems(size, 0);
+            sorters[i].sort(items, by);
+            Comparator<SortUtil.Sortable> comparator = SortUtil.getComparator(by);
+            for (int k = 0; k < size; k++) {
+                if (comparator.compare(items.get(k), expected.get(k)) != 0) {
+                    throw new IllegalStateException("Different order at " + String.valueOf(k));
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        System.out.println("processors: " + String.valueOf(Runtime.getRuntime().availableProcessors()));
+        System.out.println("by, items, Collections.sort, key sort, key sort (2 threads) [ms]");
+        int[] bys = {SortUtil.BY_DATE, SortUtil.BY_NAME};
+        for (int b = 0; b < bys.length; b++) {
+            int by = bys[b];
+            check(10000, by);
+            for (int i = 0; i < SIZES.length; i++) {
+                int size = SIZES[i];
+                System.out.println((by == SortUtil.BY_DATE ? "date" : "name") + ", "
+                        + String.valueOf(size) + ", "
+                        + String.valueOf(time(COLLECTIONS_SORT, size, by)) + ", "
+                        + String.valueOf(time(KEY_SORT, size, by)) + ", "
+                        + String.valueOf(time(PARALLEL_KEY_SORT, size, by)));
+            }
+        }
+    }
+}
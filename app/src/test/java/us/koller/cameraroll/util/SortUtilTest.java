@@ -0,0 +1,210 @@
+package us.koller.cameraroll.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SortUtilTest {
+
+    private static class Item implements SortUtil.Sortable {
+        private String name;
+        private NameKey nameKey;
+        private long date;
+        private boolean pinned;
+
+        Item(String name, long date) {
+            this(name, date, false);
+        }
+
+        Item(String name, long date, boolean pinned) {
+            this.name = name;
+            this.date = date;
+            this.pinned = pinned;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public NameKey getNameKey() {
+            if (nameKey == null || !nameKey.isValid()) {
+                nameKey = NameKey.create(name);
+            }
+            return nameKey;
+        }
+
+        @Override
+        public long getDate() {
+            return date;
+        }
+
+        @Override
+        public String getPath() {
+            return "/" + name;
+        }
+
+        @Override
+        public boolean pinned() {
+            return pinned;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static ArrayList<Item> items(Item... items) {
+        ArrayList<Item> list = new ArrayList<>();
+        Collections.addAll(list, items);
+        return list;
+    }
+
+    private static void assertOrder(ArrayList<Item> items, String... names) {
+        assertEquals(names.length, items.size());
+        for (int i = 0; i < names.length; i++) {
+            assertEquals("position " + i, names[i], items.get(i).getName());
+        }
+    }
+
+    @Test
+    public void sortByDateNewestFirst() {
+        ArrayList<Item> items = items(new Item("a", 1), new Item("b", 3), new Item("c", 2));
+        SortUtil.sortByDate(items);
+        assertOrder(items, "b", "c", "a");
+    }
+
+    @Test
+    public void sortByDateFallsBackToNames() {
+        ArrayList<Item> items = items(new Item("IMG_10", 5), new Item("IMG_9", 5), new Item("new", 6));
+        SortUtil.sortByDate(items);
+        assertOrder(items, "new", "IMG_9", "IMG_10");
+    }
+
+    @Test
+    public void sortByNameNaturalOrder() {
+        ArrayList<Item> items = items(new Item("IMG_10", 0), new Item("IMG_2", 0), new Item("IMG_1", 0));
+        SortUtil.sortByName(items);
+        assertOrder(items, "IMG_1", "IMG_2", "IMG_10");
+    }
+
+    @Test
+    public void pinnedFirst() {
+        ArrayList<Item> items = items(new Item("a", 3), new Item("z", 1, true), new Item("b", 2));
+        SortUtil.sortByDate(items);
+        assertOrder(items, "z", "a", "b");
+
+        SortUtil.sortByName(items);
+        assertOrder(items, "z", "a", "b");
+    }
+
+    @Test
+    public void matchesTheComparators() {
+        Random random = new Random(17);
+        //above the insertion sort threshold, and above the parallel threshold
+        int[] sizes = {10, 1000, 60000};
+        for (int size : sizes) {
+            ArrayList<Item> items = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                items.add(new Item("IMG_" + random.nextInt(size), random.nextInt(size / 4 + 1),
+                        random.nextInt(50) == 0));
+            }
+
+            ArrayList<Item> expected = new ArrayList<>(items);
+            Collections.sort(expected, SortUtil.getComparator(SortUtil.BY_DATE));
+            ArrayList<Item> sorted = new ArrayList<>(items);
+            SortUtil.sortByDate(sorted);
+            for (int i = 0; i < size; i++) {
+                //stable, like Collections.sort()
+                assertSame(expected.get(i), sorted.get(i));
+            }
+
+            if (size <= 1000) {
+                expected = new ArrayList<>(items);
+                Collections.sort(expected, SortUtil.getComparator(SortUtil.BY_NAME));
+                sorted = new ArrayList<>(items);
+                SortUtil.sortByName(sorted);
+                for (int i = 0; i < size; i++) {
+                    assertSame(expected.get(i), sorted.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void resortMovesOnlyChangedItems() {
+        Item a = new Item("a", 5);
+        Item b = new Item("b", 4);
+        Item c = new Item("c", 3);
+        Item d = new Item("d", 2);
+        ArrayList<Item> items = items(a, b, c, d);
+
+        d.date = 10;
+        ArrayList<int[]> moves = SortUtil.resort(items, items(d), SortUtil.getComparator(SortUtil.BY_DATE));
+        assertOrder(items, "d", "a", "b", "c");
+        assertEquals(1, moves.size());
+        assertEquals(3, moves.get(0)[0]);
+        assertEquals(0, moves.get(0)[1]);
+    }
+
+    @Test
+    public void resortWithoutChanges() {
+        ArrayList<Item> items = items(new Item("a", 2), new Item("b", 1));
+        ArrayList<int[]> moves = SortUtil.resort(items, new ArrayList<Item>(),
+                SortUtil.getComparator(SortUtil.BY_DATE));
+        assertEquals(0, moves.size());
+        assertOrder(items, "a", "b");
+
+        //changed, but still in place
+        moves = SortUtil.resort(items, items(items.get(0)), SortUtil.getComparator(SortUtil.BY_DATE));
+        assertEquals(0, moves.size());
+        assertOrder(items, "a", "b");
+    }
+
+    @Test
+    public void resortMatchesAFullSort() {
+        Random random = new Random(42);
+        Comparator<SortUtil.Sortable> comparator = SortUtil.getComparator(SortUtil.BY_DATE);
+        for (int run = 0; run < 500; run++) {
+            int size = random.nextInt(40);
+            ArrayList<Item> items = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                items.add(new Item("IMG_" + i, random.nextInt(10)));
+            }
+            Collections.sort(items, comparator);
+
+            ArrayList<Item> changed = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                if (random.nextInt(4) == 0) {
+                    items.get(i).date = random.nextInt(10);
+                    changed.add(items.get(i));
+                }
+            }
+            ArrayList<Item> before = new ArrayList<>(items);
+
+            ArrayList<int[]> moves = SortUtil.resort(items, changed, comparator);
+
+            for (int i = 1; i < size; i++) {
+                assertTrue(comparator.compare(items.get(i - 1), items.get(i)) <= 0);
+            }
+            //at most one move per changed item
+            assertTrue(moves.size() <= changed.size());
+            //replaying the moves (like notifyItemMoved()) gives the new order
+            for (int i = 0; i < moves.size(); i++) {
+                before.add(moves.get(i)[1], before.remove(moves.get(i)[0]));
+            }
+            for (int i = 0; i < size; i++) {
+                assertSame(items.get(i), before.get(i));
+            }
+        }
+    }
+}
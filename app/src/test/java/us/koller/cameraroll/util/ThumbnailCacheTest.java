@@ -0,0 +1,346 @@
+package us.koller.cameraroll.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ThumbnailCacheTest {
+
+    //file header: version, thumbnail size; record header: path hash, lastModified, length
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 20;
+
+    private static final int THUMBNAIL_SIZE = 256;
+
+    private File file;
+    private ThumbnailCache.PackedFile packedFile;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("thumbnails", ".bin");
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        if (packedFile != null) {
+            packedFile.close();
+        }
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+        //noinspection ResultOfMethodCallIgnored
+        new File(file.getPath() + ".tmp").delete();
+    }
+
+    private void reopen(int thumbnailSize) throws IOException {
+        if (packedFile != null) {
+            packedFile.close();
+        }
+        packedFile = ThumbnailCache.PackedFile.open(file, thumbnailSize);
+    }
+
+    private static byte[] thumbnail(int length, int seed) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (seed + i);
+        }
+        return bytes;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void put_thenGet_returnsTheThumbnail() throws IOException {
+        reopen(THUMBNAIL_SIZE);
+        byte[] a = thumbnail(100, 1);
+        byte[] b = thumbnail(50, 2);
+        packedFile.put(1L, 10L, a);
+        packedFile.put(2L, 20L, b);
+
+        assertEquals(2, packedFile.size());
+        assertArrayEquals(a, toArray(packedFile.get(1L, 10L)));
+        assertArrayEquals(b, toArray(packedFile.get(2L, 20L)));
+    }
+
+    @Test
+    public void get_unknownHashOrChangedFile_returnsNull() throws IOException {
+        reopen(THUMBNAIL_SIZE);
+        packedFile.put(1L, 10L, thumbnail(100, 1));
+
+        assertNull(packedFile.get(3L, 10L));
+        assertNull(packedFile.get(1L, 11L));
+    }
+
+    @Test
+    public void put_emptyThumbnail_isIgnored() throws IOException {
+        reopen(THUMBNAIL_SIZE);
+        packedFile.put(1L, 10L, new byte[0]);
+
+        assertEquals(0, packedFile.size());
+        assertNull(packedFile.get(1L, 10L));
+    }
+
+    @Test
+    public void put_samePath_replacesTheOlderRecord() throws IOException {
+        reopen(THUMBNAIL_SIZE);
+        byte[] newer = thumbnail(80, 5);
+        packedFile.put(1L, 10L, thumbnail(100, 1));
+        packedFile.put(1L, 11L, newer);
+
+        assertEquals(1, packedFile.size());
+        assertNull(packedFile.get(1L, 10L));
+        assertArrayEquals(newer, toArray(packedFile.get(1L, 11L)));
+    }
+
+    @Test
+    public void open_existingFile_readsTheIndex() throws IOException {
+        reopen(THUMBNAIL_SIZE);
+        byte[] a = thumbnail(100, 1);
+        byte[] b = thumbnail(200, 2);
+        packedFile.put(1L, 10L, a);
+        packedFile.put(2L, 20L, b);
+
+        reopen(THUMBNAIL_SIZE);
+
+        assertEquals(2, packedFile.size());
+        assertEquals(THUMBNAIL_SIZE, packedFile.getThumbnailSize());
+        assertArrayEquals(a, toArray(packedFile.get(1L, 10L)));
+        assertArrayEquals(b, toArray(packedFile.get(2L, 20L)));
+    }
+
+    @Test
+    public void open_fileGrownPastTheInitialCapacity_readsAllRecords() throws IOException {
+        reopen(THUMBNAIL_SIZE);
+        //more than the initial 64 KB
+        for (int i = 0; i < 40; i++) {
+            packedFile.put(i, i, thumbnail(4000, i));
+        }
+
+        reopen(THUMBNAIL_SIZE);
+
+        assertEquals(40, packedFile.size());
+        for (int i = 0; i < 40; i++) {
+            assertArrayEquals(thumbnail(4000, i), toArray(packedFile.get(i, i)));
+        }
+    }
+
+    @Test
+    public void open_smallerThumbnails_startsOver() throws IOException {
+        reopen(THUMBNAIL_SIZE);
+        packedFile.put(1L, 10L, thumbnail(100, 1));
+
+        reopen(THUMBNAIL_SIZE * 2);
+
+        assertEquals(0, packedFile.size());
+        assertEquals(THUMBNAIL_SIZE * 2, packedFile.getThumbnailSize());
+    }
+
+    @Test
+    public void open_biggerThumbnails_areKept() throws IOException {
+        reopen(THUMBNAIL_SIZE);
+        packedFile.put(1L, 10L, thumbnail(100, 1));
+
+        reopen(THUMBNAIL_SIZE / 2);
+
+        assertEquals(1, packedFile.size());
+        assertEquals(THUMBNAIL_SIZE, packedFile.getThumbnailSize());
+    }
+
+    @Test
+    public void open_otherVersion_startsOver() throws IOException {
+        reopen(THUMBNAIL_SIZE);
+        packedFile.put(1L, 10L, thumbnail(100, 1));
+        packedFile.close();
+        packedFile = null;
+        writeInt(0, -1);
+
+        reopen(THUMBNAIL_SIZE);
+
+        assertEquals(0, packedFile.size());
+    }
+
+    @Test
+    public void open_corruptTail_keepsTheRecordsBeforeIt() throws IOException {
+        reopen(THUMBNAIL_SIZE);
+        byte[] a = thumbnail(100, 1);
+        packedFile.put(1L, 10L, a);
+        packedFile.close();
+        packedFile = null;
+        //a partially written record behind the first one
+        int position = HEADER_SIZE + RECORD_HEADER_SIZE + a.length;
+        writeInt(position, 7);
+        writeInt(position + 16, -1);
+
+        reopen(THUMBNAIL_SIZE);
+        assertEquals(1, packedFile.size());
+        assertArrayEquals(a, toArray(packedFile.get(1L, 10L)));
+
+        //the tail was cleared: a record appended now is read back
+        byte[] b = thumbnail(30, 2);
+        packedFile.put(2L, 20L, b);
+        reopen(THUMBNAIL_SIZE);
+
+        assertEquals(2, packedFile.size());
+        assertArrayEquals(a, toArray(packedFile.get(1L, 10L)));
+        assertArrayEquals(b, toArray(packedFile.get(2L, 20L)));
+    }
+
+    @Test
+    public void open_recordLongerThanTheFile_isCorrupt() throws IOException {
+        reopen(THUMBNAIL_SIZE);
+        packedFile.put(1L, 10L, thumbnail(100, 1));
+        packedFile.close();
+        packedFile = null;
+        writeInt(HEADER_SIZE + 16, (int) file.length());
+
+        reopen(THUMBNAIL_SIZE);
+
+        assertEquals(0, packedFile.size());
+        assertNull(packedFile.get(1L, 10L));
+    }
+
+    @Test
+    public void open_mostlyReplacedRecords_compactsTheFile() throws IOException {
+        reopen(THUMBNAIL_SIZE);
+        byte[] newest = thumbnail(100, 9);
+        byte[] other = thumbnail(100, 3);
+        for (int i = 0; i < 5; i++) {
+            packedFile.put(1L, i, thumbnail(100, i));
+        }
+        packedFile.put(1L, 5L, newest);
+        packedFile.put(2L, 20L, other);
+
+        reopen(THUMBNAIL_SIZE);
+
+        assertEquals(2, packedFile.size());
+        assertArrayEquals(newest, toArray(packedFile.get(1L, 5L)));
+        assertArrayEquals(other, toArray(packedFile.get(2L, 20L)));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+        //only the two newest records are left
+        int end = HEADER_SIZE + 2 * (RECORD_HEADER_SIZE + 100);
+        assertEquals(100, readInt(HEADER_SIZE + RECORD_HEADER_SIZE + 100 + 16));
+        assertEquals(0, readInt(end + 16));
+
+        //and are read back from the compacted file
+        reopen(THUMBNAIL_SIZE);
+        assertEquals(2, packedFile.size());
+        assertArrayEquals(newest, toArray(packedFile.get(1L, 5L)));
+    }
+
+    @Test
+    public void putNoThumbnail_isRememberedUntilTheFileChanges() throws IOException {
+        reopen(THUMBNAIL_SIZE);
+        packedFile.put(2L, 20L, thumbnail(100, 2));
+        packedFile.putNoThumbnail(1L, 10L);
+
+        assertEquals(0, packedFile.get(1L, 10L).remaining());
+        assertNull(packedFile.get(1L, 11L));
+
+        reopen(THUMBNAIL_SIZE);
+
+        assertEquals(2, packedFile.size());
+        assertEquals(0, packedFile.get(1L, 10L).remaining());
+        assertArrayEquals(thumbnail(100, 2), toArray(packedFile.get(2L, 20L)));
+
+        //the file changed & could be decoded now
+        byte[] a = thumbnail(100, 1);
+        packedFile.put(1L, 11L, a);
+        reopen(THUMBNAIL_SIZE);
+        assertArrayEquals(a, toArray(packedFile.get(1L, 11L)));
+    }
+
+    @Test
+    public void get_returnsACopy_thatOutlivesTheMapping() throws IOException {
+        reopen(THUMBNAIL_SIZE);
+        byte[] a = thumbnail(100, 1);
+        packedFile.put(1L, 10L, a);
+        ByteBuffer cached = packedFile.get(1L, 10L);
+
+        //grows (remaps) the file, then closes (unmaps) it
+        for (int i = 2; i < 40; i++) {
+            packedFile.put(i, i, thumbnail(4000, i));
+        }
+        packedFile.close();
+
+        assertArrayEquals(a, toArray(cached));
+        assertNull(packedFile.get(1L, 10L));
+        assertEquals(0, packedFile.getCapacity());
+    }
+
+    @Test
+    public void trimDir_deletesTheLeastRecentlyUsedFiles_exceptTheOpenOnes() throws IOException {
+        File dir = File.createTempFile("thumbnails", "");
+        //noinspection ResultOfMethodCallIgnored
+        dir.delete();
+        assertTrue(dir.mkdir());
+        try {
+            File[] files = new File[4];
+            for (int i = 0; i < files.length; i++) {
+                files[i] = new File(dir, String.valueOf(i));
+                RandomAccessFile randomAccessFile = new RandomAccessFile(files[i], "rw");
+                randomAccessFile.setLength(1000);
+                randomAccessFile.close();
+                assertTrue(files[i].setLastModified(1000000000000L + i * 1000000L));
+            }
+
+            //nothing to do
+            assertEquals(0, ThumbnailCache.trimDir(dir, 4000, new ArrayList<File>()));
+
+            //the oldest file is open
+            ArrayList<File> openFiles = new ArrayList<>();
+            openFiles.add(files[0]);
+            assertEquals(2, ThumbnailCache.trimDir(dir, 2500, openFiles));
+            assertTrue(files[0].exists());
+            assertFalse(files[1].exists());
+            assertFalse(files[2].exists());
+            assertTrue(files[3].exists());
+        } finally {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (int i = 0; i < files.length; i++) {
+                    //noinspection ResultOfMethodCallIgnored
+                    files[i].delete();
+                }
+            }
+            //noinspection ResultOfMethodCallIgnored
+            dir.delete();
+        }
+    }
+
+    private void writeInt(long position, int value) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.seek(position);
+            randomAccessFile.writeInt(value);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private int readInt(long position) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            randomAccessFile.seek(position);
+            return randomAccessFile.readInt();
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+}